@@ -89,14 +89,6 @@ public class App {
     }
 
     private static void printBoard(char[][] board) {
-        System.out.println("Current board:");
-        for (char[] row : board) {
-            for (char cell : row) {
-                System.out.print((cell == '\u0000' ? '.' : cell) + " ");
-            }
-            System.out.println();
-        }
-        System.out.println("0 1 2 3 4 5 6");
-        System.out.println();        
+        Connect4.printTextBasedBoard(board);
     }
 }
@@ -0,0 +1,142 @@
+package ai;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The AiMetrics class accounts the CPU spent by computer players, per difficulty level.
+ *
+ * <p>Every move chosen by a {@link SearchStrategy} records the number of positions searched and
+ * the CPU time of the searching thread. A server shares one instance between all games to see
+ * what each level costs and, with {@link #setCpuCapNanos(long)}, to cap the total: once the cap
+ * is used up, strategies fall back to their cheapest search until {@link #reset()} is called,
+ * for example once per accounting period.</p>
+ *
+ * <p>All methods are thread-safe.</p>
+ */
+public class AiMetrics {
+    private final Map<Difficulty, LongAdder> moves=new EnumMap<>(Difficulty.class);
+    private final Map<Difficulty, LongAdder> nodes=new EnumMap<>(Difficulty.class);
+    private final Map<Difficulty, LongAdder> cpuNanos=new EnumMap<>(Difficulty.class);
+    private final LongAdder totalCpuNanos=new LongAdder();
+    private volatile long cpuCapNanos=Long.MAX_VALUE;
+
+    /**
+     * Creates metrics with all counters at zero and no CPU cap.
+     */
+    public AiMetrics() {
+        for(Difficulty difficulty : Difficulty.values()){
+            moves.put(difficulty, new LongAdder());
+            nodes.put(difficulty, new LongAdder());
+            cpuNanos.put(difficulty, new LongAdder());
+        }
+    }
+
+    /**
+     * Records one computer move.
+     *
+     * @param difficulty The level that chose the move
+     * @param searchedNodes The number of positions searched
+     * @param cpu The CPU time spent in nanoseconds
+     */
+    public void record(Difficulty difficulty, long searchedNodes, long cpu) {
+        moves.get(difficulty).increment();
+        nodes.get(difficulty).add(searchedNodes);
+        cpuNanos.get(difficulty).add(cpu);
+        totalCpuNanos.add(cpu);
+    }
+
+    /**
+     * Sets the CPU time all computer players together may spend until the next {@link #reset()}.
+     *
+     * @param cpuCapNanos The cap in nanoseconds, or {@code Long.MAX_VALUE} for no cap
+     */
+    public void setCpuCapNanos(long cpuCapNanos) {
+        this.cpuCapNanos=cpuCapNanos;
+    }
+
+    /**
+     * Gets the CPU time all computer players together may spend until the next {@link #reset()}.
+     *
+     * @return the cap in nanoseconds, {@code Long.MAX_VALUE} if there is none
+     */
+    public long getCpuCapNanos() {
+        return cpuCapNanos;
+    }
+
+    /**
+     * Checks whether the CPU cap has been used up.
+     *
+     * @return {@code true} if computer players should only use their cheapest search
+     */
+    public boolean isOverCap() {
+        return totalCpuNanos.sum()>=cpuCapNanos;
+    }
+
+    /**
+     * Gets the number of moves chosen at a level.
+     *
+     * @param difficulty The level
+     * @return the move count
+     */
+    public long getMoves(Difficulty difficulty) {
+        return moves.get(difficulty).sum();
+    }
+
+    /**
+     * Gets the number of positions searched at a level.
+     *
+     * @param difficulty The level
+     * @return the node count
+     */
+    public long getNodes(Difficulty difficulty) {
+        return nodes.get(difficulty).sum();
+    }
+
+    /**
+     * Gets the CPU time spent at a level.
+     *
+     * @param difficulty The level
+     * @return the CPU time in nanoseconds
+     */
+    public long getCpuNanos(Difficulty difficulty) {
+        return cpuNanos.get(difficulty).sum();
+    }
+
+    /**
+     * Gets the CPU time spent by all levels since the last reset.
+     *
+     * @return the CPU time in nanoseconds
+     */
+    public long getTotalCpuNanos() {
+        return totalCpuNanos.sum();
+    }
+
+    /**
+     * Sets all counters back to zero. The CPU cap is kept.
+     */
+    public void reset() {
+        for(Difficulty difficulty : Difficulty.values()){
+            moves.get(difficulty).reset();
+            nodes.get(difficulty).reset();
+            cpuNanos.get(difficulty).reset();
+        }
+        totalCpuNanos.reset();
+    }
+
+    /**
+     * Prints the moves, nodes and CPU time per level.
+     *
+     * @param out The stream to print to
+     */
+    public void print(PrintStream out) {
+        out.printf("%-13s %10s %14s %12s %14s%n", "difficulty", "moves", "nodes", "cpu ms", "cpu us/move");
+        for(Difficulty difficulty : Difficulty.values()){
+            long count=getMoves(difficulty);
+            out.printf("%-13s %,10d %,14d %,12.1f %,14.1f%n", difficulty, count, getNodes(difficulty),
+                    getCpuNanos(difficulty)/1e6, count==0 ? 0.0 : getCpuNanos(difficulty)/1e3/count);
+        }
+    }
+}
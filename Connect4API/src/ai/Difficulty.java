@@ -0,0 +1,69 @@
+package ai;
+
+/**
+ * The difficulty levels of computer players.
+ *
+ * <p>Each level fixes the cost and the strength of a computer move through three settings:</p>
+ * <ul>
+ *     <li><b>Node budget:</b> the largest number of positions a search may visit for one move.
+ *         This bounds the CPU cost of every move of the level.</li>
+ *     <li><b>Evaluation noise:</b> a random amount up to this value is added to the score of each
+ *         candidate move, so weaker levels misjudge close positions.</li>
+ *     <li><b>Blunder rate:</b> the share of moves played at random without searching.</li>
+ * </ul>
+ */
+public enum Difficulty {
+    /**
+     * Plays almost at random and finds only the most obvious moves
+     */
+    BEGINNER(200, 150, 0.30),
+    /**
+     * Sees short tactics but still makes mistakes
+     */
+    CASUAL(2_000, 40, 0.10),
+    /**
+     * Searches several moves ahead and rarely blunders
+     */
+    INTERMEDIATE(20_000, 10, 0.02),
+    /**
+     * Uses a deep search without noise or blunders
+     */
+    EXPERT(200_000, 0, 0.0);
+
+    private final int nodeBudget;
+    private final int evaluationNoise;
+    private final double blunderRate;
+
+    Difficulty(int nodeBudget, int evaluationNoise, double blunderRate) {
+        this.nodeBudget=nodeBudget;
+        this.evaluationNoise=evaluationNoise;
+        this.blunderRate=blunderRate;
+    }
+
+    /**
+     * Gets the largest number of positions searched for one move.
+     *
+     * @return the node budget
+     */
+    public int getNodeBudget() {
+        return nodeBudget;
+    }
+
+    /**
+     * Gets the largest random amount added to the score of a candidate move.
+     *
+     * @return the evaluation noise
+     */
+    public int getEvaluationNoise() {
+        return evaluationNoise;
+    }
+
+    /**
+     * Gets the share of moves played at random.
+     *
+     * @return the blunder rate between 0 and 1
+     */
+    public double getBlunderRate() {
+        return blunderRate;
+    }
+}
@@ -0,0 +1,175 @@
+package ai;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import game.Bitboard;
+
+/**
+ * The Evaluator class scores a non-terminal Connect4 position for depth-limited search.
+ *
+ * <p>The score is computed from two parts, both working on {@link Bitboard} masks:</p>
+ * <ul>
+ *     <li><b>Windows:</b> every one of the 69 lines of four cells on the board is identified by
+ *         its first cell, kept in a precomputed mask per direction. A window that holds checkers
+ *         of only one player scores according to how many it holds. The windows of one direction
+ *         are counted together by adding the four shifted stone masks bit by bit, so there is no
+ *         loop over cells or windows.</li>
+ *     <li><b>Threats:</b> empty cells that would complete four are found with shifts over the
+ *         whole board. Threats that can be played right now are weighted separately.</li>
+ * </ul>
+ * <p>Checkers in the centre column get a small bonus. Scores are from the point of view of the
+ * player whose stones are passed first; a positive score favours that player.</p>
+ *
+ * <p>The weights can be loaded from a properties file with the keys {@code window.1},
+ * {@code window.2}, {@code window.3}, {@code threat}, {@code threat.playable} and {@code center},
+ * so that each difficulty level can use its own trade-off between search depth and evaluation
+ * quality. Missing keys keep their default value. Instances are immutable and thread-safe.</p>
+ */
+public class Evaluator {
+    // Bit distance between neighbouring cells of a window: vertical, horizontal and both diagonals
+    private static final int[] SHIFTS={1, Bitboard.COLUMN_BITS, Bitboard.COLUMN_BITS+1, Bitboard.COLUMN_BITS-1};
+    // First cells of all windows per direction, in the order of SHIFTS
+    private static final long[] STARTS=buildStarts();
+    private static final long CENTER=Bitboard.columnMask(Bitboard.COLS/2);
+
+    // Score of a window with 1, 2 or 3 checkers of one player and none of the other
+    private final int oneWeight;
+    private final int twoWeight;
+    private final int threeWeight;
+    private final int threatWeight;
+    private final int playableThreatWeight;
+    private final int centerWeight;
+
+    /**
+     * Creates an evaluator with the default weights.
+     */
+    public Evaluator() {
+        this(new Properties());
+    }
+
+    /**
+     * Creates an evaluator with the weights found in the given properties, using the default for
+     * every missing key.
+     *
+     * @param weights The weights by key
+     * @throws NumberFormatException if a weight is not an integer; the message names the key
+     */
+    public Evaluator(Properties weights) {
+        this.oneWeight=weight(weights, "window.1", 1);
+        this.twoWeight=weight(weights, "window.2", 4);
+        this.threeWeight=weight(weights, "window.3", 16);
+        this.threatWeight=weight(weights, "threat", 40);
+        this.playableThreatWeight=weight(weights, "threat.playable", 200);
+        this.centerWeight=weight(weights, "center", 3);
+    }
+
+    /**
+     * Loads an evaluator from a properties file.
+     *
+     * @param file The weights file
+     * @return an evaluator with the weights of the file
+     * @throws IOException if the file cannot be read or a weight in it is not an integer
+     */
+    public static Evaluator load(Path file) throws IOException {
+        Properties weights=new Properties();
+        try (InputStream in=Files.newInputStream(file)) {
+            weights.load(in);
+        }
+        try {
+            return new Evaluator(weights);
+        } catch (NumberFormatException e) {
+            throw new IOException(e.getMessage()+" in "+file, e);
+        }
+    }
+
+    private static int weight(Properties weights, String key, int defaultValue) {
+        String value=weights.getProperty(key);
+        if(value==null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Weight "+key+" is not an integer: "+value);
+        }
+    }
+
+    /**
+     * Scores a position.
+     *
+     * @param own The stones of the player the score is for
+     * @param opponent The stones of the other player
+     * @return the score, positive if the position is good for {@code own}
+     */
+    public int evaluate(long own, long opponent) {
+        int score=directionScore(own, opponent, 0)+directionScore(own, opponent, 1)
+                +directionScore(own, opponent, 2)+directionScore(own, opponent, 3);
+        long occupied=own|opponent;
+        long playable=Bitboard.playableCells(occupied);
+        long ownThreats=Bitboard.winningCells(own, occupied);
+        long opponentThreats=Bitboard.winningCells(opponent, occupied);
+        score+=threatWeight*(Long.bitCount(ownThreats)-Long.bitCount(opponentThreats));
+        score+=playableThreatWeight*(Long.bitCount(ownThreats&playable)-Long.bitCount(opponentThreats&playable));
+        score+=centerWeight*(Long.bitCount(own&CENTER)-Long.bitCount(opponent&CENTER));
+        return score;
+    }
+
+    /**
+     * Scores the windows of one direction, counting only windows without stones of the other player.
+     */
+    private int directionScore(long own, long opponent, int direction) {
+        int shift=SHIFTS[direction];
+        long ownAny=own|(own>>>shift)|(own>>>(2*shift))|(own>>>(3*shift));
+        long opponentAny=opponent|(opponent>>>shift)|(opponent>>>(2*shift))|(opponent>>>(3*shift));
+        return windowScore(own, shift, STARTS[direction]&~opponentAny)
+                -windowScore(opponent, shift, STARTS[direction]&~ownAny);
+    }
+
+    /**
+     * Scores the windows of one direction that start at the given cells, by the number of
+     * stones each holds.
+     *
+     * @param stones The stones to count
+     * @param shift The bit distance between the cells of a window
+     * @param starts The first cells of the windows to score
+     */
+    private int windowScore(long stones, int shift, long starts) {
+        long a=stones&starts;
+        long b=(stones>>>shift)&starts;
+        long c=(stones>>>(2*shift))&starts;
+        long d=(stones>>>(3*shift))&starts;
+        // add the four bits of every window in parallel
+        long sumAB=a^b;
+        long carryAB=a&b;
+        long sumCD=c^d;
+        long carryCD=c&d;
+        long bit0=sumAB^sumCD;
+        long carry=sumAB&sumCD;
+        // a sum of 4 leaves bit0 and bit1 clear, so it is never scored
+        long bit1=carryAB^carryCD^carry;
+        return oneWeight*Long.bitCount(bit0&~bit1)
+                +twoWeight*Long.bitCount(~bit0&bit1)
+                +threeWeight*Long.bitCount(bit0&bit1);
+    }
+
+    /**
+     * Builds the masks of the first cells of all lines of four, one mask per direction.
+     */
+    private static long[] buildStarts() {
+        long[] starts=new long[SHIFTS.length];
+        int[][] directions={{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for(int d=0; d<directions.length; d++){
+            for(int col=0; col<Bitboard.COLS; col++){
+                for(int height=0; height<Bitboard.ROWS; height++){
+                    int lastCol=col+3*directions[d][0];
+                    int lastHeight=height+3*directions[d][1];
+                    if(lastCol>=Bitboard.COLS || lastHeight<0 || lastHeight>=Bitboard.ROWS) continue;
+                    starts[d]|=1L<<(col*Bitboard.COLUMN_BITS+height);
+                }
+            }
+        }
+        return starts;
+    }
+}
@@ -0,0 +1,215 @@
+package ai;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.SplittableRandom;
+
+import game.Bitboard;
+import game.ComputerStrategy;
+
+/**
+ * The SearchStrategy class plays Connect4 moves with an alpha-beta search limited by the node
+ * budget of a {@link Difficulty}.
+ *
+ * <p>The search deepens one ply at a time and stops as soon as the budget is used up, keeping the
+ * scores of the last depth it completed. Leaves are scored by an {@link Evaluator}, and the
+ * threat queries of {@link Bitboard} cut the tree: a winning move ends the search at once and
+ * only moves that do not lose immediately are tried. Because the work is bounded by the budget,
+ * every move of a level costs about the same CPU time whatever the position.</p>
+ *
+ * <p>The level also decides how often a move is played at random and how much noise is added to
+ * the scores of the candidate moves. An optional {@link SolverCache} keeps searched positions
+ * between moves and games; it should only be shared between strategies using the same
+ * evaluator. An optional {@link AiMetrics} records the nodes and CPU time of every move, and
+ * while its CPU cap is used up the search is limited to the {@link Difficulty#BEGINNER} budget.</p>
+ *
+ * <p>{@link #chooseColumn(long, long)} is synchronized, because games call it without holding
+ * their own lock: two threads may ask for a move of the same game, or of two games sharing one
+ * strategy, at the same time. Searches of one instance therefore run one after the other; give
+ * each game its own strategy so that games are searched in parallel.</p>
+ */
+public class SearchStrategy implements ComputerStrategy {
+    // Score of a won position before the bonus for winning early
+    private static final int WIN=1_000_000;
+    // Columns in the order they are searched, centre first
+    private static final int[] ORDER={3, 2, 4, 1, 5, 0, 6};
+    private static final ThreadMXBean THREADS=ManagementFactory.getThreadMXBean();
+
+    private final Difficulty difficulty;
+    private final Evaluator evaluator;
+    private final SolverCache cache;
+    private final AiMetrics metrics;
+    private final SplittableRandom random;
+
+    // Search state of the current move
+    private long nodes;
+    private long nodeLimit;
+    private boolean aborted;
+    private final int[] scores=new int[Bitboard.COLS];
+    private final int[] depthScores=new int[Bitboard.COLS];
+
+    /**
+     * Creates a strategy with the default evaluator, no cache and no metrics.
+     *
+     * @param difficulty The level to play at
+     */
+    public SearchStrategy(Difficulty difficulty) {
+        this(difficulty, new Evaluator(), null, null, new SplittableRandom());
+    }
+
+    /**
+     * Creates a strategy.
+     *
+     * @param difficulty The level to play at
+     * @param evaluator The evaluator scoring the leaves of the search
+     * @param cache The cache of searched positions, or {@code null}
+     * @param metrics The metrics to record every move in, or {@code null}
+     * @param random The source of blunders and evaluation noise
+     */
+    public SearchStrategy(Difficulty difficulty, Evaluator evaluator, SolverCache cache, AiMetrics metrics, SplittableRandom random) {
+        this.difficulty=difficulty;
+        this.evaluator=evaluator;
+        this.cache=cache;
+        this.metrics=metrics;
+        this.random=random;
+    }
+
+    /**
+     * Gets the level this strategy plays at.
+     *
+     * @return the difficulty
+     */
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    @Override
+    public synchronized int chooseColumn(long own, long opponent) {
+        long start=metrics==null ? 0 : THREADS.getCurrentThreadCpuTime();
+        nodes=0;
+        int column=search(own, opponent);
+        if(metrics!=null){
+            metrics.record(difficulty, nodes, THREADS.getCurrentThreadCpuTime()-start);
+        }
+        return column;
+    }
+
+    // Chooses a column within the node budget, -1 if the board is full
+    private int search(long own, long opponent) {
+        long occupied=own|opponent;
+        int legal=Bitboard.columnsOf(Bitboard.playableCells(occupied));
+        if(legal==0) return -1;
+        if(random.nextDouble()<difficulty.getBlunderRate()) return randomColumn(legal);
+
+        int winning=Bitboard.winningColumns(own, opponent);
+        if(winning!=0) return firstColumn(winning);
+        int candidates=Bitboard.nonLosingColumns(own, opponent);
+        if(candidates==0) return firstColumn(legal);
+        if(Integer.bitCount(candidates)==1) return firstColumn(candidates);
+
+        boolean capped=metrics!=null && metrics.isOverCap();
+        nodeLimit=capped ? Difficulty.BEGINNER.getNodeBudget() : difficulty.getNodeBudget();
+        aborted=false;
+        int remaining=Bitboard.ROWS*Bitboard.COLS-Long.bitCount(occupied);
+        boolean completed=false;
+        for(int depth=1; depth<=remaining && !aborted; depth++){
+            boolean decided=true;
+            for(int col : ORDER){
+                if((candidates>>col&1)==0) continue;
+                long cell=Bitboard.playableCells(occupied)&Bitboard.columnMask(col);
+                depthScores[col]=-negamax(opponent, own|cell, depth-1, -WIN*2, WIN*2);
+                if(aborted) break;
+                if(Math.abs(depthScores[col])<WIN) decided=false;
+            }
+            if(aborted) break;
+            System.arraycopy(depthScores, 0, scores, 0, Bitboard.COLS);
+            completed=true;
+            // Every move leads to a known result, deeper search cannot change the choice
+            if(decided) break;
+        }
+        if(!completed) return firstColumn(candidates);
+        return bestColumn(candidates);
+    }
+
+    // Picks the best scored candidate after adding the noise of the level
+    private int bestColumn(int candidates) {
+        int noise=difficulty.getEvaluationNoise();
+        int best=-1;
+        long bestScore=Long.MIN_VALUE;
+        for(int col : ORDER){
+            if((candidates>>col&1)==0) continue;
+            long score=scores[col];
+            // Noise never hides a forced win or loss
+            if(noise>0 && Math.abs(score)<WIN) score+=random.nextInt(-noise, noise+1);
+            if(score>bestScore){
+                bestScore=score;
+                best=col;
+            }
+        }
+        return best;
+    }
+
+    // Scores the position for the player to move; stops early once the node budget is spent
+    private int negamax(long own, long opponent, int depth, int alpha, int beta) {
+        if(++nodes>nodeLimit){
+            aborted=true;
+            return 0;
+        }
+        long occupied=own|opponent;
+        long playable=Bitboard.playableCells(occupied);
+        if(playable==0) return 0;
+        int stones=Long.bitCount(occupied);
+        if((Bitboard.winningCells(own, occupied)&playable)!=0){
+            return WIN+Bitboard.ROWS*Bitboard.COLS-stones;
+        }
+        int candidates=Bitboard.nonLosingColumns(own, opponent);
+        if(candidates==0) return -(WIN+Bitboard.ROWS*Bitboard.COLS-stones-1);
+        if(depth==0) return evaluator.evaluate(own, opponent);
+
+        long key=0;
+        int originalAlpha=alpha;
+        if(cache!=null){
+            key=(stones&1)==0 ? Bitboard.key(own, opponent) : Bitboard.key(opponent, own);
+            long entry=cache.get(key);
+            if(entry!=0 && SolverCache.depthOf(entry)>=depth){
+                int score=SolverCache.scoreOf(entry);
+                int bound=SolverCache.boundOf(entry);
+                if(bound==SolverCache.EXACT) return score;
+                if(bound==SolverCache.LOWER_BOUND && score>=beta) return score;
+                if(bound==SolverCache.UPPER_BOUND && score<=alpha) return score;
+            }
+        }
+
+        int best=-WIN*2;
+        for(int col : ORDER){
+            if((candidates>>col&1)==0) continue;
+            int score=-negamax(opponent, own|(playable&Bitboard.columnMask(col)), depth-1, -beta, -alpha);
+            if(aborted) return 0;
+            if(score>best) best=score;
+            if(score>alpha) alpha=score;
+            if(alpha>=beta) break;
+        }
+        if(cache!=null){
+            int bound=best<=originalAlpha ? SolverCache.UPPER_BOUND : best>=beta ? SolverCache.LOWER_BOUND : SolverCache.EXACT;
+            cache.put(key, best, depth, bound);
+        }
+        return best;
+    }
+
+    // Picks one of the given columns uniformly
+    private int randomColumn(int columns) {
+        int pick=random.nextInt(Integer.bitCount(columns));
+        for(int col=0; col<Bitboard.COLS; col++){
+            if((columns>>col&1)!=0 && pick--==0) return col;
+        }
+        return -1;
+    }
+
+    // The first of the given columns in search order
+    private static int firstColumn(int columns) {
+        for(int col : ORDER){
+            if((columns>>col&1)!=0) return col;
+        }
+        return -1;
+    }
+}
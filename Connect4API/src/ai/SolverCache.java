@@ -0,0 +1,242 @@
+package ai;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The SolverCache class stores solved position values in a memory-mapped file so that they
+ * survive restarts of the JVM.
+ *
+ * <p>The file holds a fixed number of buckets of four 16-byte entries, so its size never grows.
+ * Opening a cache only maps the file; the operating system pages entries in when they are
+ * first used, so a warm restart costs no start-up time. When a bucket is full, the entry with
+ * the smallest search depth is replaced.</p>
+ *
+ * <p>Any number of search threads can read and write at the same time without locks. Each entry
+ * stores its value and the key xor-ed with the value. A reader only accepts an entry when the
+ * two agree, so an entry half-written by another thread reads as a miss.</p>
+ *
+ * <p>Keys are position keys as returned by {@code GameCodec.encodePosition}. Values are packed into a
+ * {@code long} by {@link #put(long, int, int, int)} and unpacked with {@link #scoreOf(long)},
+ * {@link #depthOf(long)} and {@link #boundOf(long)}.</p>
+ */
+public class SolverCache implements Closeable {
+    /**
+     * The stored score is the exact value of the position
+     */
+    public static final int EXACT=0;
+    /**
+     * The value of the position is at least the stored score
+     */
+    public static final int LOWER_BOUND=1;
+    /**
+     * The value of the position is at most the stored score
+     */
+    public static final int UPPER_BOUND=2;
+
+    private static final long MAGIC=0x43344341434845L;
+    private static final int FORMAT_VERSION=1;
+    private static final int HEADER_BYTES=64;
+    private static final int ENTRY_BYTES=16;
+    private static final int BUCKET_ENTRIES=4;
+    // Marks a used entry so a stored value is never 0
+    private static final long USED=1L<<63;
+    private static final VarHandle LONGS=MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int bucketMask;
+    private final LongAdder hits=new LongAdder();
+    private final LongAdder misses=new LongAdder();
+
+    private SolverCache(FileChannel channel, MappedByteBuffer buffer, int buckets) {
+        this.channel=channel;
+        this.buffer=buffer;
+        this.bucketMask=buckets-1;
+    }
+
+    /**
+     * Opens the cache file, creating it if it does not exist. An existing file keeps its size,
+     * even if {@code maxEntries} differs.
+     *
+     * @param file The cache file
+     * @param maxEntries The number of entries of a new file, rounded up to the next power of two
+     *                   and to at least one bucket of four entries
+     * @return the opened cache
+     * @throws IOException if the file cannot be opened or is not a cache file
+     */
+    public static SolverCache open(Path file, int maxEntries) throws IOException {
+        FileChannel channel=FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int buckets;
+            if(channel.size()==0){
+                int needed=(int) ((Math.max(maxEntries, 1)+BUCKET_ENTRIES-1L)/BUCKET_ENTRIES);
+                buckets=needed==1 ? 1 : Integer.highestOneBit(needed-1)<<1;
+            }else{
+                MappedByteBuffer header=channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                if(header.getLong(0)!=MAGIC || header.getInt(8)!=FORMAT_VERSION){
+                    throw new IOException(file+" is not a solver cache");
+                }
+                buckets=header.getInt(12);
+                // the bucket index is masked, so anything but a power of two would corrupt lookups
+                if(buckets<=0 || (buckets&(buckets-1))!=0){
+                    throw new IOException(file+" has an invalid bucket count: "+buckets);
+                }
+            }
+            long size=HEADER_BYTES+(long) buckets*BUCKET_ENTRIES*ENTRY_BYTES;
+            if(size>Integer.MAX_VALUE) throw new IOException("Solver cache too large: "+size+" bytes");
+            MappedByteBuffer buffer=channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, FORMAT_VERSION);
+            buffer.putInt(12, buckets);
+            return new SolverCache(channel, buffer, buckets);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key The position key
+     * @return the packed value, or 0 if the position is not in the cache
+     */
+    public long get(long key) {
+        int base=bucketOffset(key);
+        for(int i=0; i<BUCKET_ENTRIES; i++){
+            int offset=base+i*ENTRY_BYTES;
+            long checked=(long) LONGS.getOpaque(buffer, offset);
+            long value=(long) LONGS.getOpaque(buffer, offset+8);
+            if(value!=0 && (checked^value)==key){
+                hits.increment();
+                return value;
+            }
+        }
+        misses.increment();
+        return 0;
+    }
+
+    /**
+     * Stores the value of a position. An existing entry for the same key is overwritten; otherwise
+     * an empty entry of the bucket is used or, if there is none, the entry with the smallest depth.
+     *
+     * @param key The position key
+     * @param score The score of the position
+     * @param depth The search depth the score was found with (0-255)
+     * @param bound {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}
+     */
+    public void put(long key, int score, int depth, int bound) {
+        long value=USED|(long) (bound&3)<<40|(long) (Math.min(Math.max(depth, 0), 255))<<32|(score&0xffffffffL);
+        int base=bucketOffset(key);
+        int victim=base;
+        int victimDepth=Integer.MAX_VALUE;
+        for(int i=0; i<BUCKET_ENTRIES; i++){
+            int offset=base+i*ENTRY_BYTES;
+            long checked=(long) LONGS.getOpaque(buffer, offset);
+            long stored=(long) LONGS.getOpaque(buffer, offset+8);
+            if(stored==0 || (checked^stored)==key){
+                victim=offset;
+                break;
+            }
+            int storedDepth=depthOf(stored);
+            if(storedDepth<victimDepth){
+                victim=offset;
+                victimDepth=storedDepth;
+            }
+        }
+        LONGS.setOpaque(buffer, victim, key^value);
+        LONGS.setOpaque(buffer, victim+8, value);
+    }
+
+    /**
+     * Gets the score of a packed value.
+     *
+     * @param value A value returned by {@link #get(long)}
+     * @return the stored score
+     */
+    public static int scoreOf(long value) {
+        return (int) value;
+    }
+
+    /**
+     * Gets the search depth of a packed value.
+     *
+     * @param value A value returned by {@link #get(long)}
+     * @return the stored depth
+     */
+    public static int depthOf(long value) {
+        return (int) (value>>>32)&0xff;
+    }
+
+    /**
+     * Gets the bound type of a packed value.
+     *
+     * @param value A value returned by {@link #get(long)}
+     * @return {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}
+     */
+    public static int boundOf(long value) {
+        return (int) (value>>>40)&3;
+    }
+
+    /**
+     * Gets the number of entries the cache can hold.
+     *
+     * @return the capacity
+     */
+    public long capacity() {
+        return (long) (bucketMask+1)*BUCKET_ENTRIES;
+    }
+
+    /**
+     * Gets the number of lookups that found a value since the cache was opened.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that found nothing since the cache was opened.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Writes all changed entries to disk.
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Writes all changed entries to disk and closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private int bucketOffset(long key) {
+        long h=key*0x9E3779B97F4A7C15L;
+        int bucket=(int) (h>>>32)&bucketMask;
+        return HEADER_BYTES+bucket*BUCKET_ENTRIES*ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,176 @@
+package analytics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+import game.Bitboard;
+
+/**
+ * The ArchiveAnalyzer class computes {@code GameStats} over archives of recorded games.
+ *
+ * <p>An archive is a text file with one {@code <mode> <moves>} record per line. Each file is
+ * split into byte ranges of {@value #RANGE_BYTES} bytes that are analysed in parallel by the
+ * common fork/join pool. A range owns every line that starts inside it, so a line crossing the
+ * end of a range is finished by that range and skipped by the next one. Every range is read
+ * with positional reads through one small buffer and replayed into the {@code GameStats} of its
+ * worker thread; the partial results are merged at the end. Memory use is a buffer and a
+ * {@code GameStats} per thread, whatever the size of the archive, so archives with hundreds of
+ * millions of games (several GB) can be analysed.</p>
+ *
+ * <p>Usage:</p>
+ * <ul>
+ *     <li>{@code java analytics.ArchiveAnalyzer <archive> [<archive> ...]} prints the statistics.</li>
+ *     <li>{@code java analytics.ArchiveAnalyzer --generate <games> <archive>} writes an archive of
+ *         random games for testing.</li>
+ * </ul>
+ */
+public class ArchiveAnalyzer {
+    // Bytes of the archive per parallel task
+    static final int RANGE_BYTES=8<<20;
+    // Read buffer per task; a record is at most 45 bytes, longer lines are counted as invalid
+    private static final int BUFFER_BYTES=64<<10;
+
+    public static void main(String[] args) throws IOException {
+        if(args.length==3 && args[0].equals("--generate")){
+            generate(Long.parseLong(args[1]), Paths.get(args[2]));
+            return;
+        }
+        long start=System.nanoTime();
+        GameStats stats=new GameStats();
+        for(String file : args) stats.combine(analyze(Paths.get(file)));
+        double seconds=(System.nanoTime()-start)/1e9;
+        stats.print(System.out, 10);
+        System.out.printf("Analysed in %.1f s (%,.0f games/s)%n", seconds, stats.getGames()/seconds);
+    }
+
+    /**
+     * Analyses one archive using all available processors.
+     *
+     * @param archive The archive file
+     * @return the statistics of all records in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static GameStats analyze(Path archive) throws IOException {
+        return analyze(archive, RANGE_BYTES);
+    }
+
+    /**
+     * Analyses one archive split into ranges of the given size.
+     *
+     * @param archive The archive file
+     * @param rangeBytes The number of bytes per parallel task
+     * @return the statistics of all records in the file
+     * @throws IOException if the file cannot be read
+     */
+    static GameStats analyze(Path archive, int rangeBytes) throws IOException {
+        try (FileChannel channel=FileChannel.open(archive, StandardOpenOption.READ)) {
+            long size=channel.size();
+            long ranges=(size+rangeBytes-1)/rangeBytes;
+            return LongStream.range(0, ranges).parallel()
+                    .collect(GameStats::new,
+                            (stats, range) -> analyzeRange(channel, range*rangeBytes, Math.min(size, (range+1)*rangeBytes), stats),
+                            GameStats::combine);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Replays every line that starts in {@code [start, end)} of the file into {@code stats}.
+     * Positional reads do not move the channel position, so ranges can be read in parallel.
+     */
+    private static void analyzeRange(FileChannel channel, long start, long end, GameStats stats) {
+        try {
+            ByteBuffer buffer=ByteBuffer.allocate(BUFFER_BYTES);
+            byte[] bytes=buffer.array();
+            // the line around the start of the range belongs to the previous range
+            boolean skip=false;
+            if(start>0){
+                ByteBuffer previous=ByteBuffer.allocate(1);
+                channel.read(previous, start-1);
+                skip=previous.get(0)!='\n';
+            }
+            // bytes[0] is at file offset position-filled
+            long position=start;
+            int filled=0;
+            int lineStart=0;
+            while(true){
+                if(lineStart>0){
+                    System.arraycopy(bytes, lineStart, bytes, 0, filled-lineStart);
+                    filled-=lineStart;
+                    lineStart=0;
+                }
+                if(filled==bytes.length){
+                    // no line break in a whole buffer, give up on this line
+                    if(!skip && position-filled>=end) return;
+                    if(!skip) stats.acceptInvalid();
+                    skip=true;
+                    filled=0;
+                }
+                buffer.limit(bytes.length).position(filled);
+                int read=channel.read(buffer, position);
+                if(read<=0){
+                    // last line of the file without a line break
+                    if(filled>0 && !skip && position-filled<end) accept(stats, bytes, 0, filled);
+                    return;
+                }
+                position+=read;
+                int scanFrom=filled;
+                filled+=read;
+                for(int i=scanFrom; i<filled; i++){
+                    if(bytes[i]!='\n') continue;
+                    if(skip){
+                        skip=false;
+                    }else{
+                        if(position-filled+lineStart>=end) return;
+                        accept(stats, bytes, lineStart, i);
+                    }
+                    lineStart=i+1;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Adds one line, ignoring a trailing carriage return and empty lines
+    private static void accept(GameStats stats, byte[] bytes, int from, int to) {
+        if(to>from && bytes[to-1]=='\r') to--;
+        if(to>from) stats.accept(bytes, from, to);
+    }
+
+    /**
+     * Writes an archive of random, finished games with random modes.
+     *
+     * @param games The number of games to write
+     * @param archive The file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void generate(long games, Path archive) throws IOException {
+        SplittableRandom random=new SplittableRandom(42);
+        ReplayEngine engine=new ReplayEngine();
+        StringBuilder line=new StringBuilder(48);
+        try (BufferedWriter out=Files.newBufferedWriter(archive, StandardCharsets.US_ASCII)) {
+            for(long g=0; g<games; g++){
+                engine.reset();
+                line.setLength(0);
+                line.append(1+random.nextInt(3)).append(' ');
+                while(engine.getStatus()==ReplayEngine.CONTINUE){
+                    int col=random.nextInt(Bitboard.COLS);
+                    if(engine.play(col)!=ReplayEngine.INVALID) line.append((char) ('0'+col));
+                }
+                out.append(line).append('\n');
+            }
+        }
+    }
+}
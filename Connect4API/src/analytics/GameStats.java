@@ -0,0 +1,232 @@
+package analytics;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import game.Bitboard;
+
+/**
+ * The GameStats class aggregates statistics over many recorded games in a fixed amount of memory.
+ *
+ * <p>A record is one line of the form {@code <mode> <moves>}, for example {@code 2 3344521}: the
+ * game mode and the columns played, as returned by {@code Connect4.getMode()} and
+ * {@code Connect4.getMoves()}. Games handed between workers in the Base64 text form of
+ * {@code GameCodec} can be turned into a record with {@code GameCodec.fromText}. For every
+ * record the moves are replayed on a {@link ReplayEngine} and the following are counted:</p>
+ * <ul>
+ *     <li>the outcome per opening, where an opening is the first two columns played;</li>
+ *     <li>the number of games and plies per game mode;</li>
+ *     <li>blunders per ply and column: a <i>missed win</i> is a move that did not take an
+ *         immediate win, an <i>allowed win</i> is a move that let the opponent win next
+ *         although a safe column was available.</li>
+ * </ul>
+ * <p>Instances are not thread-safe. Parallel runs give each thread its own instance and merge
+ * them with {@link #combine(GameStats)}.</p>
+ */
+public class GameStats {
+    private static final int CELLS=Bitboard.ROWS*Bitboard.COLS;
+    private static final int RED_WIN=0;
+    private static final int BLUE_WIN=1;
+    private static final int DRAW=2;
+    private static final int UNFINISHED=3;
+
+    // [first*7+second][outcome]
+    private final long[][] openings=new long[Bitboard.COLS*Bitboard.COLS][4];
+    // index 0 collects records with an unknown mode
+    private final long[] gamesByMode=new long[4];
+    private final long[] pliesByMode=new long[4];
+    // [ply][column]
+    private final long[][] missedWins=new long[CELLS][Bitboard.COLS];
+    private final long[][] allowedWins=new long[CELLS][Bitboard.COLS];
+    private long games;
+    private long invalidRecords;
+    private final ReplayEngine engine=new ReplayEngine();
+    // Blunders of the record being replayed, packed as ply<<4 | column<<1 | kind
+    private final int[] pendingBlunders=new int[CELLS];
+
+    /**
+     * Replays one record and adds it to the statistics. Records with an invalid move are only
+     * counted as invalid.
+     *
+     * @param record A line of the form {@code <mode> <moves>}
+     */
+    public void accept(String record) {
+        byte[] bytes=record.getBytes(StandardCharsets.US_ASCII);
+        accept(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Replays one record held as ASCII bytes, as read straight from an archive, and adds it to
+     * the statistics. Records with an invalid move are only counted as invalid.
+     *
+     * @param record The buffer holding the record
+     * @param from The index of the first byte of the record
+     * @param to The index after the last byte of the record, not counting the line break
+     */
+    public void accept(byte[] record, int from, int to) {
+        int space=from;
+        while(space<to && record[space]!=' ') space++;
+        if(space==to) space=from-1;
+        int mode=space==from+1 ? record[from]-'0' : 0;
+        if(mode<1 || mode>3) mode=0;
+        engine.reset();
+        int first=-1;
+        int second=-1;
+        // blunders are only counted once the whole record turned out to be valid
+        int blunderCount=0;
+        for(int i=space+1; i<to; i++){
+            int col=record[i]-'0';
+            int ply=engine.getPly();
+            int kind=classify(col);
+            if(engine.play(col)==ReplayEngine.INVALID){
+                invalidRecords++;
+                return;
+            }
+            if(kind!=0) pendingBlunders[blunderCount++]=ply<<4|col<<1|(kind-1);
+            if(ply==0) first=col;
+            else if(ply==1) second=col;
+        }
+        for(int b=0; b<blunderCount; b++){
+            int packed=pendingBlunders[b];
+            int ply=packed>>>4;
+            int col=(packed>>>1)&7;
+            if((packed&1)==0) missedWins[ply][col]++;
+            else allowedWins[ply][col]++;
+        }
+        games++;
+        gamesByMode[mode]++;
+        pliesByMode[mode]+=engine.getPly();
+        if(second>=0){
+            int outcome;
+            if(engine.getStatus()==ReplayEngine.WIN) outcome=(engine.getPly()&1)==1 ? RED_WIN : BLUE_WIN;
+            else if(engine.getStatus()==ReplayEngine.DRAW) outcome=DRAW;
+            else outcome=UNFINISHED;
+            openings[first*Bitboard.COLS+second][outcome]++;
+        }
+    }
+
+    /**
+     * Counts a record that could not be read at all, for example a line that is far too long.
+     */
+    void acceptInvalid() {
+        invalidRecords++;
+    }
+
+    /**
+     * Classifies the move about to be played in the current engine position.
+     *
+     * @return 0 for a normal move, 1 for a missed win, 2 for an allowed win
+     */
+    private int classify(int col) {
+        if(col<0 || col>=Bitboard.COLS) return 0;
+        long own=engine.getCurrentStones();
+        long opponent=engine.getOpponentStones();
+        int winning=Bitboard.winningColumns(own, opponent);
+        if(winning!=0) return (winning&(1<<col))==0 ? 1 : 0;
+        int safe=Bitboard.nonLosingColumns(own, opponent);
+        // a losing move is only a blunder if a safe column was available
+        return safe!=0 && (safe&(1<<col))==0 ? 2 : 0;
+    }
+
+    /**
+     * Adds the counts of another instance to this one.
+     *
+     * @param other The statistics to merge
+     */
+    public void combine(GameStats other) {
+        games+=other.games;
+        invalidRecords+=other.invalidRecords;
+        for(int i=0; i<openings.length; i++){
+            for(int j=0; j<4; j++) openings[i][j]+=other.openings[i][j];
+        }
+        for(int i=0; i<4; i++){
+            gamesByMode[i]+=other.gamesByMode[i];
+            pliesByMode[i]+=other.pliesByMode[i];
+        }
+        for(int i=0; i<CELLS; i++){
+            for(int j=0; j<Bitboard.COLS; j++){
+                missedWins[i][j]+=other.missedWins[i][j];
+                allowedWins[i][j]+=other.allowedWins[i][j];
+            }
+        }
+    }
+
+    /**
+     * Gets the number of valid records.
+     *
+     * @return the number of games counted
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Gets the number of records that contained an invalid move.
+     *
+     * @return the number of skipped records
+     */
+    public long getInvalidRecords() {
+        return invalidRecords;
+    }
+
+    /**
+     * Gets the share of finished games won by the first player for an opening.
+     *
+     * @param first The first column played
+     * @param second The second column played
+     * @return the win rate of the first player, or {@code NaN} if no game finished with that opening
+     */
+    public double getFirstPlayerWinRate(int first, int second) {
+        long[] counts=openings[first*Bitboard.COLS+second];
+        long finished=counts[RED_WIN]+counts[BLUE_WIN]+counts[DRAW];
+        return finished==0 ? Double.NaN : (double) counts[RED_WIN]/finished;
+    }
+
+    /**
+     * Gets the average number of plies of the games of one mode.
+     *
+     * @param mode The game mode (1-3), or 0 for records without a valid mode
+     * @return the average game length, or {@code NaN} if there were no such games
+     */
+    public double getAverageLength(int mode) {
+        return gamesByMode[mode]==0 ? Double.NaN : (double) pliesByMode[mode]/gamesByMode[mode];
+    }
+
+    /**
+     * Prints a summary with the win rates per opening, the game lengths per mode and the most
+     * common blunders.
+     *
+     * @param out The stream to print to
+     * @param topBlunders The number of blunders to list
+     */
+    public void print(PrintStream out, int topBlunders) {
+        out.printf("Games: %,d (invalid records: %,d)%n", games, invalidRecords);
+        out.println("Average length by mode:");
+        for(int mode=1; mode<=3; mode++){
+            out.printf("  mode %d: %,d games, %.2f plies%n", mode, gamesByMode[mode], getAverageLength(mode));
+        }
+        out.println("First player win rate by opening (rows: first column, columns: second column):");
+        for(int first=0; first<Bitboard.COLS; first++){
+            StringBuilder row=new StringBuilder("  ").append(first).append(':');
+            for(int second=0; second<Bitboard.COLS; second++){
+                row.append(String.format(" %5.1f%%", 100*getFirstPlayerWinRate(first, second)));
+            }
+            out.println(row);
+        }
+        List<long[]> blunders=new ArrayList<>();
+        for(int ply=0; ply<CELLS; ply++){
+            for(int col=0; col<Bitboard.COLS; col++){
+                if(missedWins[ply][col]>0) blunders.add(new long[]{missedWins[ply][col], ply, col, 0});
+                if(allowedWins[ply][col]>0) blunders.add(new long[]{allowedWins[ply][col], ply, col, 1});
+            }
+        }
+        blunders.sort((a, b) -> Long.compare(b[0], a[0]));
+        out.println("Most common blunders:");
+        for(int i=0; i<Math.min(topBlunders, blunders.size()); i++){
+            long[] b=blunders.get(i);
+            out.printf("  %,d x %s at ply %d in column %d%n", b[0], b[3]==0 ? "missed win" : "allowed win", b[1], b[2]);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package analytics;
+
+import game.Bitboard;
+
+/**
+ * The ReplayEngine class replays recorded move sequences on bit boards as fast as possible.
+ *
+ * <p>Unlike {@code Connect4} it never throws, never copies a board and never allocates after it
+ * has been created: an invalid move is reported through the return value of {@link #play(int)}.
+ * One engine is meant to be reused for many games by calling {@link #reset()} in between.</p>
+ */
+public class ReplayEngine {
+    /**
+     * The move was played and the game goes on
+     */
+    public static final int CONTINUE=0;
+    /**
+     * The move was played and won the game
+     */
+    public static final int WIN=1;
+    /**
+     * The move was played and filled the board without a winner
+     */
+    public static final int DRAW=2;
+    /**
+     * The move was not played because the column is out of range or full, or the game is over
+     */
+    public static final int INVALID=3;
+
+    // stones[0] are red (first player), stones[1] are blue
+    private final long[] stones=new long[2];
+    private long occupied;
+    private int ply;
+    private int status=CONTINUE;
+
+    /**
+     * Clears the board for a new game.
+     */
+    public void reset() {
+        stones[0]=0;
+        stones[1]=0;
+        occupied=0;
+        ply=0;
+        status=CONTINUE;
+    }
+
+    /**
+     * Drops a checker of the player to move into the given column.
+     *
+     * @param col The column (0-6)
+     * @return {@link #CONTINUE}, {@link #WIN}, {@link #DRAW} or {@link #INVALID}
+     */
+    public int play(int col) {
+        if(status!=CONTINUE || col<0 || col>=Bitboard.COLS) return INVALID;
+        long cell=Bitboard.playableCells(occupied)&Bitboard.columnMask(col);
+        if(cell==0) return INVALID;
+        int side=ply&1;
+        stones[side]|=cell;
+        occupied|=cell;
+        ply++;
+        if(Bitboard.hasFour(stones[side])) status=WIN;
+        else if(ply==Bitboard.ROWS*Bitboard.COLS) status=DRAW;
+        return status;
+    }
+
+    /**
+     * Gets the stones of the player to move.
+     *
+     * @return the stones in {@link Bitboard} layout
+     */
+    public long getCurrentStones() {
+        return stones[ply&1];
+    }
+
+    /**
+     * Gets the stones of the player who moved last.
+     *
+     * @return the stones in {@link Bitboard} layout
+     */
+    public long getOpponentStones() {
+        return stones[(ply&1)^1];
+    }
+
+    /**
+     * Gets the stones of both players.
+     *
+     * @return the occupied cells in {@link Bitboard} layout
+     */
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * Gets the number of checkers played.
+     *
+     * @return the ply count
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Gets the status after the last move.
+     *
+     * @return {@link #CONTINUE}, {@link #WIN} or {@link #DRAW}
+     */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,384 @@
+package benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import ai.Difficulty;
+import ai.SearchStrategy;
+import exceptions.GameException;
+import game.Connect4;
+import game.GameContext;
+import game.GameResult;
+import game.Player;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Measures the garbage produced over the whole life of a game and fails if it exceeds a budget.
+ *
+ * The profiler plays a fixed, seeded workload of human vs computer and computer vs computer
+ * games. Every game goes through the same calls a server makes: a new {@code Connect4} with two
+ * players, {@code setPlayerName}, {@code startGame}, {@code dropChecker} until the game ends
+ * (human players also try invalid columns, caught as {@code GameException}), then
+ * {@code getWinner} and {@code getMoves}. After a warm-up it reports:
+ * <ul>
+ *     <li>bytes allocated per move and per game for each mode, from {@code ThreadMXBean};</li>
+ *     <li>bytes allocated per call of each API method, measured with {@code ThreadMXBean} around
+ *         every call;</li>
+ *     <li>GC count and pause times, from a JFR recording of {@code jdk.GarbageCollection};</li>
+ *     <li>the frames that allocate and the classes they allocate, from the JFR event
+ *         {@code jdk.ObjectAllocationSample}. Its {@code weight} is the number of bytes allocated
+ *         since the previous sample of the thread and is charged to the sampled frame. The JVM
+ *         only samples when a thread needs a new TLAB, which with default TLAB sizes gives about
+ *         a hundred samples per run; use small TLABs ({@code -XX:-ResizeTLAB -XX:TLABSize=2k})
+ *         to rank frames. Nothing is printed while recording, so the report is not charged for
+ *         its own output.</li>
+ * </ul>
+ * The process exits with status 1 if any configured budget is exceeded, so it can gate a build.
+ *
+ * Usage: java benchmark.AllocationProfiler [options]
+ *   --games N                 games per mode (default 20000)
+ *   --warmup N                warm-up games per mode, not measured (default 20000)
+ *   --invalid P               share of human turns that first try an invalid column (default 0.05)
+ *   --difficulty LEVEL        computer players use ai.SearchStrategy at this level (default random play)
+ *   --seed S                  seed of the workload (default 1)
+ *   --call-sites true|false   record JFR allocation events per frame (default true)
+ *   --max-bytes-per-move B    fail if any mode allocates more per move
+ *   --max-bytes-per-game B    fail if any mode allocates more per game
+ *   --max-pause-ms MS         fail if the longest GC pause is longer
+ */
+public class AllocationProfiler {
+    private static final String[] MODE_NAMES={"", "human vs human", "human vs computer", "computer vs computer"};
+    private static final int[] MODES={2, 3};
+
+    // API calls measured one by one, indexes into SITES
+    private static final int NEW_GAME=0;
+    private static final int SET_NAME=1;
+    private static final int START=2;
+    private static final int HUMAN_DROP=3;
+    private static final int INVALID_DROP=4;
+    private static final int COMPUTER_DROP=5;
+    private static final int WINNER=6;
+    private static final int MOVES=7;
+    private static final String[] SITES={"new Connect4", "setPlayerName", "startGame", "dropChecker (human)",
+            "dropChecker (invalid)", "dropChecker (computer)", "getWinner", "getMoves"};
+    private static final int TOP_FRAMES=15;
+    // Below this many allocation samples the frame report is too coarse to rank frames
+    private static final int MIN_SAMPLES=1000;
+
+    private final com.sun.management.ThreadMXBean threads=
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final long[] siteCalls=new long[SITES.length];
+    private final long[] siteBytes=new long[SITES.length];
+    private long mark;
+    private SplittableRandom random;
+
+    private int games=20_000;
+    private int warmup=20_000;
+    private double invalidShare=0.05;
+    private Difficulty difficulty;
+    private long seed=1;
+    private boolean callSites=true;
+    private double maxBytesPerMove=-1;
+    private double maxBytesPerGame=-1;
+    private double maxPauseMillis=-1;
+
+    public static void main(String[] args) throws Exception {
+        AllocationProfiler profiler=new AllocationProfiler();
+        for(int i=0; i<args.length; i+=2){
+            if(i+1==args.length) throw new IllegalArgumentException("Option "+args[i]+" needs a value");
+            switch(args[i]){
+                case "--games": profiler.games=Integer.parseInt(args[i+1]); break;
+                case "--warmup": profiler.warmup=Integer.parseInt(args[i+1]); break;
+                case "--invalid": profiler.invalidShare=Double.parseDouble(args[i+1]); break;
+                case "--difficulty": profiler.difficulty=Difficulty.valueOf(args[i+1]); break;
+                case "--seed": profiler.seed=Long.parseLong(args[i+1]); break;
+                case "--call-sites": profiler.callSites=Boolean.parseBoolean(args[i+1]); break;
+                case "--max-bytes-per-move": profiler.maxBytesPerMove=Double.parseDouble(args[i+1]); break;
+                case "--max-bytes-per-game": profiler.maxBytesPerGame=Double.parseDouble(args[i+1]); break;
+                case "--max-pause-ms": profiler.maxPauseMillis=Double.parseDouble(args[i+1]); break;
+                default: throw new IllegalArgumentException("Unknown option "+args[i]);
+            }
+        }
+        System.exit(profiler.run() ? 0 : 1);
+    }
+
+    /**
+     * Runs the workload and prints the report.
+     *
+     * @return {@code true} if every budget was met
+     */
+    private boolean run() throws Exception {
+        if(!threads.isThreadAllocatedMemorySupported()) throw new IllegalStateException("Allocation counting is not supported by this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        random=new SplittableRandom(seed);
+        for(int mode : MODES) play(mode, warmup);
+        Arrays.fill(siteCalls, 0);
+        Arrays.fill(siteBytes, 0);
+        // the first query of the GC beans loads classes, keep that out of the recording
+        collectionCount();
+
+        List<String> failures=new ArrayList<>();
+        Recording recording=new Recording();
+        recording.enable("jdk.GarbageCollection");
+        if(callSites){
+            // sample every TLAB refill instead of 150 per second, the measured run is short
+            recording.enable("jdk.ObjectAllocationSample").withStackTrace().with("throttle", "off");
+        }
+        // nothing is printed while recording, so that only the workload is sampled
+        long[] moves=new long[MODES.length];
+        long[] allocated=new long[MODES.length];
+        long[] elapsed=new long[MODES.length];
+        recording.start();
+        long collections=collectionCount();
+        for(int i=0; i<MODES.length; i++){
+            long before=threads.getCurrentThreadAllocatedBytes();
+            long start=System.nanoTime();
+            moves[i]=play(MODES[i], games);
+            elapsed[i]=System.nanoTime()-start;
+            allocated[i]=threads.getCurrentThreadAllocatedBytes()-before;
+        }
+        collections=collectionCount()-collections;
+        recording.stop();
+
+        System.out.printf("%-22s %10s %12s %12s %12s %10s%n", "workload", "games", "moves", "bytes/move", "bytes/game", "ns/move");
+        for(int i=0; i<MODES.length; i++){
+            String name=MODE_NAMES[MODES[i]];
+            double perMove=(double) allocated[i]/moves[i];
+            double perGame=(double) allocated[i]/games;
+            System.out.printf("%-22s %,10d %,12d %,12.1f %,12.1f %,10.1f%n", name, games, moves[i], perMove, perGame, (double) elapsed[i]/moves[i]);
+            if(maxBytesPerMove>=0 && perMove>maxBytesPerMove){
+                failures.add(String.format("%s: %.1f bytes/move exceeds budget %.1f", name, perMove, maxBytesPerMove));
+            }
+            if(maxBytesPerGame>=0 && perGame>maxBytesPerGame){
+                failures.add(String.format("%s: %.1f bytes/game exceeds budget %.1f", name, perGame, maxBytesPerGame));
+            }
+        }
+
+        Path file=Files.createTempFile("allocation-profile", ".jfr");
+        try {
+            recording.dump(file);
+            recording.close();
+
+            System.out.println();
+            System.out.printf("%-24s %12s %12s%n", "call site", "calls", "bytes/call");
+            for(int site=0; site<SITES.length; site++){
+                if(siteCalls[site]==0) continue;
+                System.out.printf("%-24s %,12d %,12.1f%n", SITES[site], siteCalls[site], (double) siteBytes[site]/siteCalls[site]);
+            }
+
+            List<RecordedEvent> events=RecordingFile.readAllEvents(file);
+            double longestPause=reportCollections(events, collections);
+            if(maxPauseMillis>=0 && longestPause>maxPauseMillis){
+                failures.add(String.format("longest GC pause %.2f ms exceeds budget %.2f ms", longestPause, maxPauseMillis));
+            }
+            if(callSites) reportFrames(events);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println();
+        if(failures.isEmpty()){
+            System.out.println("All budgets met");
+            return true;
+        }
+        for(String failure : failures) System.out.println("BUDGET EXCEEDED: "+failure);
+        return false;
+    }
+
+    /**
+     * Plays a number of games of one mode.
+     *
+     * @return the number of moves played
+     */
+    private long play(int mode, int count) throws GameException {
+        long moves=0;
+        for(int i=0; i<count; i++){
+            begin();
+            Player player1=new Player();
+            Player player2=new Player();
+            if(difficulty!=null){
+                SearchStrategy strategy=new SearchStrategy(difficulty);
+                player1.setComputerStrategy(strategy);
+                player2.setComputerStrategy(strategy);
+            }
+            Connect4 game=new Connect4(mode, player1, player2);
+            end(NEW_GAME);
+
+            begin();
+            game.setPlayerName(player1, "Player 1");
+            end(SET_NAME);
+            if(mode==1){
+                begin();
+                game.setPlayerName(player2, "Player 2");
+                end(SET_NAME);
+            }
+
+            begin();
+            GameContext context=game.startGame();
+            end(START);
+            while(context.getResult()==GameResult.CONTINUE){
+                char[][] board=context.getBoard();
+                if(context.getCurrentPlayer().isComputer()){
+                    begin();
+                    context=game.dropChecker(openColumn(board));
+                    end(COMPUTER_DROP);
+                }else{
+                    if(random.nextDouble()<invalidShare){
+                        begin();
+                        try {
+                            game.dropChecker(invalidColumn(board));
+                        } catch (GameException e) {
+                            // expected, a human picked a full or non-existent column
+                        }
+                        end(INVALID_DROP);
+                    }
+                    int col=random.nextInt(7);
+                    while(board[0][col]!='\u0000') col=(col+1)%7;
+                    begin();
+                    context=game.dropChecker(col);
+                    end(HUMAN_DROP);
+                }
+                moves++;
+            }
+
+            begin();
+            game.getWinner();
+            end(WINNER);
+            begin();
+            game.getMoves();
+            end(MOVES);
+        }
+        return moves;
+    }
+
+    private void begin() {
+        mark=threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private void end(int site) {
+        siteBytes[site]+=threads.getCurrentThreadAllocatedBytes()-mark;
+        siteCalls[site]++;
+    }
+
+    // Any column that is not full; the strategy or the random play of the game picks the move
+    private static int openColumn(char[][] board) {
+        for(int col=0; col<board[0].length; col++){
+            if(board[0][col]=='\u0000') return col;
+        }
+        return 0;
+    }
+
+    // A full column if there is one, otherwise a column that does not exist
+    private static int invalidColumn(char[][] board) {
+        for(int col=0; col<board[0].length; col++){
+            if(board[0][col]!='\u0000') return col;
+        }
+        return board[0].length;
+    }
+
+    private static long collectionCount() {
+        long count=0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()){
+            count+=Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * Prints the GC pauses recorded during the measured games.
+     *
+     * @return the longest pause in milliseconds
+     */
+    private static double reportCollections(List<RecordedEvent> events, long collections) {
+        long count=0;
+        long totalNanos=0;
+        long longestNanos=0;
+        Map<String, long[]> byCollector=new HashMap<>();
+        for(RecordedEvent event : events){
+            if(!event.getEventType().getName().equals("jdk.GarbageCollection")) continue;
+            long pauses=event.getDuration("sumOfPauses").toNanos();
+            long longest=event.getDuration("longestPause").toNanos();
+            count++;
+            totalNanos+=pauses;
+            longestNanos=Math.max(longestNanos, longest);
+            long[] sums=byCollector.computeIfAbsent(event.getString("name"), k -> new long[2]);
+            sums[0]++;
+            sums[1]+=pauses;
+        }
+        System.out.println();
+        System.out.printf("GC: %d collections (%d counted by the MXBeans), total pause %.2f ms, longest pause %.2f ms%n",
+                count, collections, totalNanos/1e6, longestNanos/1e6);
+        for(Map.Entry<String, long[]> entry : byCollector.entrySet()){
+            System.out.printf("    %-20s %6d collections %10.2f ms%n", entry.getKey(), entry.getValue()[0], entry.getValue()[1]/1e6);
+        }
+        return longestNanos/1e6;
+    }
+
+    /**
+     * Prints the frames that allocated the most, with the class they allocated. The frame is the
+     * first one outside the JDK, so that allocations in library code are charged to their caller.
+     * Only samples of the thread running the workload count. Its first sample is left out, as its
+     * weight also covers what the thread allocated before the recording started.
+     */
+    private static void reportFrames(List<RecordedEvent> events) {
+        long thread=Thread.currentThread().threadId();
+        List<RecordedEvent> samples=new ArrayList<>();
+        for(RecordedEvent event : events){
+            if(!event.getEventType().getName().equals("jdk.ObjectAllocationSample")) continue;
+            if(event.getThread("eventThread")==null || event.getThread("eventThread").getJavaThreadId()!=thread) continue;
+            samples.add(event);
+        }
+        samples.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+        if(!samples.isEmpty()) samples.remove(0);
+
+        // per frame and class: samples, sampled bytes
+        Map<String, long[]> frames=new HashMap<>();
+        long totalBytes=0;
+        for(RecordedEvent event : samples){
+            long bytes=event.getLong("weight");
+            String key=callerFrame(event)+"  "+event.getClass("objectClass").getName();
+            long[] sums=frames.computeIfAbsent(key, k -> new long[2]);
+            sums[0]++;
+            sums[1]+=bytes;
+            totalBytes+=bytes;
+        }
+        System.out.println();
+        System.out.println("Allocating frames (JFR jdk.ObjectAllocationSample, by weight)");
+        if(frames.isEmpty()){
+            System.out.println("    no allocation events recorded");
+            return;
+        }
+        List<Map.Entry<String, long[]>> sorted=new ArrayList<>(frames.entrySet());
+        sorted.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        System.out.printf("%-72s %14s %14s %7s%n", "frame and class", "samples", "bytes", "share");
+        for(int i=0; i<Math.min(TOP_FRAMES, sorted.size()); i++){
+            long[] sums=sorted.get(i).getValue();
+            System.out.printf("%-72s %,14d %,14d %6.1f%%%n", sorted.get(i).getKey(), sums[0], sums[1], 100.0*sums[1]/totalBytes);
+        }
+        if(samples.size()<MIN_SAMPLES){
+            System.out.printf("    only %,d samples: the shares are rough, run with -XX:-ResizeTLAB -XX:TLABSize=2k for more%n", samples.size());
+        }
+    }
+
+    private static String callerFrame(RecordedEvent event) {
+        if(event.getStackTrace()==null) return "(no stack)";
+        for(RecordedFrame frame : event.getStackTrace().getFrames()){
+            if(!frame.isJavaFrame()) continue;
+            String type=frame.getMethod().getType().getName();
+            if(type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.")) continue;
+            return type+"."+frame.getMethod().getName()+":"+frame.getLineNumber();
+        }
+        return "(JDK)";
+    }
+}
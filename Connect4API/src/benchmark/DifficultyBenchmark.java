@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.util.SplittableRandom;
+
+import ai.AiMetrics;
+import ai.Difficulty;
+import ai.Evaluator;
+import ai.SearchStrategy;
+import game.Connect4;
+import game.GameResult;
+import game.Player;
+
+/**
+ * Plays every difficulty level against every weaker one and prints the score of each pairing
+ * together with the CPU time spent per move at each level.
+ *
+ * <p>The levels of a pairing take turns at moving first, so the advantage of the first move
+ * does not decide the score. Scores are given for the stronger level.</p>
+ *
+ * <p>Usage: {@code java benchmark.DifficultyBenchmark [gamesPerPairing]}</p>
+ */
+public class DifficultyBenchmark {
+    public static void main(String[] args) throws Exception {
+        int games=args.length>0 ? Integer.parseInt(args[0]) : 20;
+        Evaluator evaluator=new Evaluator();
+        AiMetrics metrics=new AiMetrics();
+        SplittableRandom seeds=new SplittableRandom(11);
+        Difficulty[] levels=Difficulty.values();
+        System.out.printf("%-13s %-13s %6s %6s %6s%n", "level", "opponent", "wins", "losses", "draws");
+        for(int strong=1; strong<levels.length; strong++){
+            for(int weak=0; weak<strong; weak++){
+                int wins=0, losses=0, draws=0;
+                SearchStrategy level=new SearchStrategy(levels[strong], evaluator, null, metrics, seeds.split());
+                SearchStrategy opponent=new SearchStrategy(levels[weak], evaluator, null, metrics, seeds.split());
+                Player player1=new Player("1", true);
+                Player player2=new Player("2", true);
+                Connect4 game=new Connect4(3, player1, player2);
+                for(int i=0; i<games; i++){
+                    // the stronger level moves first in every other game
+                    player1.setComputerStrategy(i%2==0 ? level : opponent);
+                    player2.setComputerStrategy(i%2==0 ? opponent : level);
+                    game.reset();
+                    GameResult result=GameResult.CONTINUE;
+                    while(result==GameResult.CONTINUE){
+                        // the column only has to be valid, the strategy chooses the move
+                        result=game.dropChecker(openColumn(game.getGameContext().getBoard())).getResult();
+                    }
+                    if(result==GameResult.DRAW) draws++;
+                    else if(game.getWinner().getComputerStrategy()==level) wins++;
+                    else losses++;
+                }
+                System.out.printf("%-13s %-13s %6d %6d %6d%n", levels[strong], levels[weak], wins, losses, draws);
+            }
+        }
+        System.out.println();
+        metrics.print(System.out);
+    }
+
+    // Any column that is not full
+    private static int openColumn(char[][] board) {
+        for(int col=0; col<board[0].length; col++){
+            if(board[0][col]=='\u0000') return col;
+        }
+        return 0;
+    }
+}
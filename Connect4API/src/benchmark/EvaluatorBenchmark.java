@@ -0,0 +1,44 @@
+package benchmark;
+
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+import ai.Evaluator;
+import analytics.ReplayEngine;
+
+/**
+ * Measures the time per call of {@code Evaluator.evaluate} over a set of random positions.
+ *
+ * <p>Usage: {@code java benchmark.EvaluatorBenchmark [weights.properties]}</p>
+ */
+public class EvaluatorBenchmark {
+    private static final int POSITIONS=4096;
+    private static final int ROUNDS=2000;
+
+    public static void main(String[] args) throws Exception {
+        Evaluator evaluator=args.length>0 ? Evaluator.load(Paths.get(args[0])) : new Evaluator();
+        long[] own=new long[POSITIONS];
+        long[] opponent=new long[POSITIONS];
+        SplittableRandom random=new SplittableRandom(7);
+        ReplayEngine engine=new ReplayEngine();
+        for(int i=0; i<POSITIONS; i++){
+            engine.reset();
+            int plies=random.nextInt(30);
+            while(engine.getPly()<plies && engine.getStatus()==ReplayEngine.CONTINUE){
+                engine.play(random.nextInt(7));
+            }
+            own[i]=engine.getCurrentStones();
+            opponent[i]=engine.getOpponentStones();
+        }
+        long checksum=0;
+        for(int round=0; round<ROUNDS/4; round++){
+            for(int i=0; i<POSITIONS; i++) checksum+=evaluator.evaluate(own[i], opponent[i]);
+        }
+        long start=System.nanoTime();
+        for(int round=0; round<ROUNDS; round++){
+            for(int i=0; i<POSITIONS; i++) checksum+=evaluator.evaluate(own[i], opponent[i]);
+        }
+        long elapsed=System.nanoTime()-start;
+        System.out.printf("%.1f ns per evaluation (checksum %d)%n", (double) elapsed/ROUNDS/POSITIONS, checksum);
+    }
+}
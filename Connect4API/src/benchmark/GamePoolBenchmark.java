@@ -0,0 +1,91 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import game.Connect4;
+import game.GameContext;
+import game.GamePool;
+import game.GameResult;
+import game.Player;
+
+/**
+ * Measures the bytes allocated per game when games are taken from a {@code GamePool}
+ * compared to creating a new {@code Connect4} for every game.
+ *
+ * <p>Both runs play the same deterministic human vs human games. After a warm-up phase the pooled
+ * run is expected to report zero bytes per game.</p>
+ *
+ * <p>Usage: {@code java benchmark.GamePoolBenchmark [games]}</p>
+ */
+public class GamePoolBenchmark {
+    private static final int WARMUP_GAMES=200_000;
+
+    public static void main(String[] args) throws Exception {
+        int games=args.length>0 ? Integer.parseInt(args[0]) : 1_000_000;
+        com.sun.management.ThreadMXBean threads=
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        GamePool pool=new GamePool(1, 16);
+
+        // warm up both paths so the JIT has compiled them before measuring
+        runPooled(pool, WARMUP_GAMES);
+        runFresh(WARMUP_GAMES);
+
+        long before=threads.getCurrentThreadAllocatedBytes();
+        long start=System.nanoTime();
+        long moves=runFresh(games);
+        long elapsed=System.nanoTime()-start;
+        long allocated=threads.getCurrentThreadAllocatedBytes()-before;
+        report("new Connect4", games, moves, allocated, elapsed);
+
+        before=threads.getCurrentThreadAllocatedBytes();
+        start=System.nanoTime();
+        moves=runPooled(pool, games);
+        elapsed=System.nanoTime()-start;
+        allocated=threads.getCurrentThreadAllocatedBytes()-before;
+        report("GamePool", games, moves, allocated, elapsed);
+    }
+
+    private static long runPooled(GamePool pool, int games) throws Exception {
+        long moves=0;
+        for(int i=0; i<games; i++){
+            Connect4 game=pool.acquire();
+            moves+=play(game, i);
+            pool.release(game);
+        }
+        return moves;
+    }
+
+    private static long runFresh(int games) throws Exception {
+        long moves=0;
+        for(int i=0; i<games; i++){
+            moves+=play(new Connect4(1, new Player(), new Player()), i);
+        }
+        return moves;
+    }
+
+    /**
+     * Plays one game to the end choosing columns with a cheap xorshift sequence seeded by the
+     * game number, skipping full columns so no exception is thrown.
+     */
+    private static int play(Connect4 game, int seed) throws Exception {
+        int state=seed*0x9E3779B9+1;
+        int moves=0;
+        GameContext context=game.startGame();
+        while(context.getResult()==GameResult.CONTINUE){
+            char[][] board=context.getBoard();
+            state^=state<<13;
+            state^=state>>>17;
+            state^=state<<5;
+            int col=(state>>>1)%7;
+            while(board[0][col]!='\u0000') col=(col+1)%7;
+            context=game.dropChecker(col);
+            moves++;
+        }
+        return moves;
+    }
+
+    private static void report(String name, int games, long moves, long allocated, long elapsedNanos) {
+        System.out.printf("%-14s %,d games, %,d moves, %.1f bytes/game, %.1f ns/game%n",
+                name, games, moves, (double) allocated/games, (double) elapsedNanos/games);
+    }
+}
@@ -0,0 +1,206 @@
+package benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import exceptions.GameException;
+import game.Bitboard;
+import game.Connect4;
+import game.GameContext;
+import game.GameResult;
+import game.Player;
+
+/**
+ * Counts every position reachable from a start position up to a given depth, together with the
+ * wins and draws on the way, and measures how fast moves are generated.
+ *
+ * <p>The same tree is walked three ways: on bit boards single-threaded, on bit boards with a
+ * fork/join pool, and through the public {@code Connect4} API as the reference. Games that end
+ * are not expanded further. All three must produce the same counts; any difference means a move
+ * generation or win detection bug in one of them.</p>
+ *
+ * <p>Usage: {@code java benchmark.Perft <depth> [moves] [referenceDepth]} where {@code moves} is
+ * the start position as played columns (for example {@code 33}) and {@code referenceDepth}
+ * limits the slow reference walk (default: the same depth).</p>
+ */
+public class Perft {
+    private static final int CELLS=Bitboard.ROWS*Bitboard.COLS;
+    // Below this depth the fork/join walk stops splitting and counts in the current task
+    private static final int SEQUENTIAL_DEPTH=5;
+
+    /**
+     * Counts per depth, index 1 is one move after the start position.
+     */
+    static class Counts {
+        final long[] nodes;
+        final long[] wins;
+        final long[] draws;
+
+        Counts(int depth) {
+            nodes=new long[depth+1];
+            wins=new long[depth+1];
+            draws=new long[depth+1];
+        }
+
+        void add(Counts other) {
+            for(int d=0; d<nodes.length; d++){
+                nodes[d]+=other.nodes[d];
+                wins[d]+=other.wins[d];
+                draws[d]+=other.draws[d];
+            }
+        }
+
+        long total() {
+            long total=0;
+            for(long n : nodes) total+=n;
+            return total;
+        }
+
+        boolean sameAs(Counts other, int depth) {
+            for(int d=1; d<=depth; d++){
+                if(nodes[d]!=other.nodes[d] || wins[d]!=other.wins[d] || draws[d]!=other.draws[d]) return false;
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int depth=Integer.parseInt(args[0]);
+        String start=args.length>1 ? args[1] : "";
+        int referenceDepth=args.length>2 ? Integer.parseInt(args[2]) : depth;
+
+        Connect4 game=new Connect4(1, new Player(), new Player());
+        game.restoreMoves(start);
+        if(game.getGameContext().getResult()!=GameResult.CONTINUE){
+            System.out.println("The start position is already finished");
+            return;
+        }
+        long own=game.getSnapshot().getCurrentColor()==Connect4.RED
+                ? game.getSnapshot().getRedStones() : game.getSnapshot().getBlueStones();
+        long occupied=game.getSnapshot().getRedStones()|game.getSnapshot().getBlueStones();
+        int ply=start.length();
+
+        long begin=System.nanoTime();
+        Counts single=new Counts(depth);
+        perft(own, occupied, ply, 1, depth, single);
+        report("bitboard", single, System.nanoTime()-begin);
+
+        begin=System.nanoTime();
+        Counts parallel=new Counts(depth);
+        ForkJoinPool.commonPool().invoke(new PerftTask(own, occupied, ply, 1, depth, parallel));
+        report("fork/join", parallel, System.nanoTime()-begin);
+
+        begin=System.nanoTime();
+        Counts reference=new Counts(referenceDepth);
+        reference(game, start, 1, referenceDepth, reference);
+        report("Connect4", reference, System.nanoTime()-begin);
+
+        System.out.println();
+        System.out.printf("%5s %16s %14s %12s%n", "depth", "nodes", "wins", "draws");
+        for(int d=1; d<=depth; d++){
+            System.out.printf("%5d %,16d %,14d %,12d%n", d, single.nodes[d], single.wins[d], single.draws[d]);
+        }
+        boolean ok=single.sameAs(parallel, depth) && single.sameAs(reference, Math.min(depth, referenceDepth));
+        System.out.println(ok ? "All implementations agree." : "MISMATCH between implementations!");
+        if(!ok) System.exit(1);
+    }
+
+    /**
+     * Walks the tree on bit boards. {@code own} are the stones of the player to move.
+     */
+    static void perft(long own, long occupied, int ply, int depth, int maxDepth, Counts counts) {
+        long playable=Bitboard.playableCells(occupied);
+        while(playable!=0){
+            long cell=playable&-playable;
+            playable^=cell;
+            long stones=own|cell;
+            counts.nodes[depth]++;
+            if(Bitboard.hasFour(stones)){
+                counts.wins[depth]++;
+            }else if(ply+1==CELLS){
+                counts.draws[depth]++;
+            }else if(depth<maxDepth){
+                // the opponent's stones are everything else that is occupied
+                perft((occupied|cell)^stones, occupied|cell, ply+1, depth+1, maxDepth, counts);
+            }
+        }
+    }
+
+    /**
+     * Splits the tree into one task per move until only {@code SEQUENTIAL_DEPTH} plies are left.
+     */
+    private static class PerftTask extends RecursiveAction {
+        private static final long serialVersionUID=1L;
+        private final long own;
+        private final long occupied;
+        private final int ply;
+        private final int depth;
+        private final int maxDepth;
+        // tasks never leave the JVM, so the shared counters are not serialized
+        private final transient Counts counts;
+
+        PerftTask(long own, long occupied, int ply, int depth, int maxDepth, Counts counts) {
+            this.own=own;
+            this.occupied=occupied;
+            this.ply=ply;
+            this.depth=depth;
+            this.maxDepth=maxDepth;
+            this.counts=counts;
+        }
+
+        @Override
+        protected void compute() {
+            if(maxDepth-depth<SEQUENTIAL_DEPTH){
+                perft(own, occupied, ply, depth, maxDepth, counts);
+                return;
+            }
+            PerftTask[] children=new PerftTask[Bitboard.COLS];
+            int n=0;
+            long playable=Bitboard.playableCells(occupied);
+            while(playable!=0){
+                long cell=playable&-playable;
+                playable^=cell;
+                long stones=own|cell;
+                counts.nodes[depth]++;
+                if(Bitboard.hasFour(stones)){
+                    counts.wins[depth]++;
+                }else if(ply+1==CELLS){
+                    counts.draws[depth]++;
+                }else if(depth<maxDepth){
+                    children[n++]=new PerftTask((occupied|cell)^stones, occupied|cell, ply+1, depth+1, maxDepth,
+                            new Counts(maxDepth));
+                }
+            }
+            for(int i=0; i<n; i++) children[i].fork();
+            for(int i=n-1; i>=0; i--){
+                children[i].join();
+                counts.add(children[i].counts);
+            }
+        }
+    }
+
+    /**
+     * Walks the tree through the public API, rebuilding the game from its move history for
+     * every node.
+     */
+    static void reference(Connect4 game, String moves, int depth, int maxDepth, Counts counts) throws GameException {
+        for(int col=0; col<Bitboard.COLS; col++){
+            game.restoreMoves(moves);
+            if(game.getGameContext().getBoard()[0][col]!='\u0000') continue;
+            GameContext context=game.dropChecker(col);
+            counts.nodes[depth]++;
+            if(context.getResult()==GameResult.WIN){
+                counts.wins[depth]++;
+            }else if(context.getResult()==GameResult.DRAW){
+                counts.draws[depth]++;
+            }else if(depth<maxDepth){
+                reference(game, moves+col, depth+1, maxDepth, counts);
+            }
+        }
+    }
+
+    private static void report(String name, Counts counts, long elapsedNanos) {
+        System.out.printf("%-10s %,14d nodes in %8.3f s, %,14.0f nodes/s%n",
+                name, counts.total(), elapsedNanos/1e9, counts.total()/(elapsedNanos/1e9));
+    }
+}
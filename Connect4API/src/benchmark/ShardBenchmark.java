@@ -0,0 +1,112 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hosting.ShardRouter;
+
+/**
+ * Starts several {@code GameWorker} JVMs on localhost and measures how the move throughput of a
+ * {@code ShardRouter} grows as workers are added. Between rounds it also checks that live games
+ * survive being handed over to the new worker.
+ *
+ * <p>Usage: {@code java benchmark.ShardBenchmark [maxWorkers] [clients] [seconds]}</p>
+ */
+public class ShardBenchmark {
+    private static final int BASE_PORT=47100;
+
+    public static void main(String[] args) throws Exception {
+        int maxWorkers=args.length>0 ? Integer.parseInt(args[0]) : 4;
+        int clients=args.length>1 ? Integer.parseInt(args[1]) : 32;
+        int seconds=args.length>2 ? Integer.parseInt(args[2]) : 5;
+
+        List<Process> processes=new ArrayList<>();
+        ShardRouter router=new ShardRouter(clients);
+        try {
+            for(int i=0; i<maxWorkers; i++) processes.add(startWorker(BASE_PORT+i));
+            double baseline=0;
+            router.addWorker("localhost:"+BASE_PORT);
+            for(int workers=1; workers<=maxWorkers; workers++){
+                int moved=0;
+                if(workers>1){
+                    // keep a few games open across the hand-off to check they are moved intact
+                    List<String> openGames=new ArrayList<>();
+                    for(int g=0; g<100; g++){
+                        String id="open-"+workers+"-"+g;
+                        router.send("NEW "+id+" 1");
+                        router.send("DROP "+id+" "+(g%7));
+                        router.send("DROP "+id+" "+((g+3)%7));
+                        openGames.add(id);
+                    }
+                    moved=router.addWorker("localhost:"+(BASE_PORT+workers-1));
+                    for(int g=0; g<openGames.size(); g++){
+                        String expected="OK 1 "+(g%7)+((g+3)%7);
+                        String state=router.send("STATE "+openGames.get(g));
+                        if(!state.equals(expected)) throw new IllegalStateException("Lost game state: "+state);
+                        router.send("END "+openGames.get(g));
+                    }
+                }
+
+                double rate=run(router, clients, seconds, workers);
+                if(workers==1) baseline=rate;
+                System.out.printf("%d worker(s): %,.0f moves/s, %.2fx, %d open games moved%n",
+                        workers, rate, rate/baseline, moved);
+            }
+        } finally {
+            router.close();
+            for(Process process : processes) process.destroy();
+        }
+    }
+
+    private static Process startWorker(int port) throws Exception {
+        String java=System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+        Process process=new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "hosting.GameWorker", String.valueOf(port)).redirectErrorStream(true).start();
+        // wait until the worker is listening
+        new BufferedReader(new InputStreamReader(process.getInputStream())).readLine();
+        return process;
+    }
+
+    private static double run(ShardRouter router, int clients, int seconds, int round) throws Exception {
+        AtomicLong moves=new AtomicLong();
+        long deadline=System.nanoTime()+seconds*1_000_000_000L;
+        Thread[] threads=new Thread[clients];
+        for(int c=0; c<clients; c++){
+            int client=c;
+            threads[c]=new Thread(() -> {
+                int[] heights=new int[7];
+                int state=client*0x9E3779B9+round;
+                long games=0;
+                try {
+                    while(System.nanoTime()<deadline){
+                        String id="bench-"+round+"-"+client+"-"+(games++);
+                        router.send("NEW "+id+" 1");
+                        Arrays.fill(heights, 0);
+                        String reply="OK CONTINUE";
+                        while(reply.startsWith("OK CONTINUE")){
+                            state^=state<<13;
+                            state^=state>>>17;
+                            state^=state<<5;
+                            int col=(state>>>1)%7;
+                            while(heights[col]==6) col=(col+1)%7;
+                            heights[col]++;
+                            reply=router.send("DROP "+id+" "+col);
+                            moves.incrementAndGet();
+                        }
+                        router.send("END "+id);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            threads[c].start();
+        }
+        for(Thread thread : threads) thread.join();
+        return moves.get()/(double) seconds;
+    }
+}
@@ -0,0 +1,223 @@
+package game;
+
+/**
+ * The Bitboard class holds the constants and helpers for storing a Connect4 board as bits of a
+ * {@code long}.
+ *
+ * <p>The board is stored column by column. Each column uses 7 bits: 6 bits for the cells from
+ * the bottom row upwards and one spare bit on top that is always empty, so that shifting a
+ * pattern never wraps into the next column. Bit {@code col*7 + height} is the cell in column
+ * {@code col} at {@code height} cells above the bottom. A position is described by one such
+ * mask per colour.</p>
+ */
+public final class Bitboard {
+    /**
+     * The number of rows of the board
+     */
+    public static final int ROWS=6;
+    /**
+     * The number of columns of the board
+     */
+    public static final int COLS=7;
+    /**
+     * The number of bits used by one column, including the spare top bit
+     */
+    public static final int COLUMN_BITS=ROWS+1;
+    /**
+     * A mask with the bottom cell of every column set
+     */
+    public static final long BOTTOM_MASK=bottomMask();
+    /**
+     * A mask with every playable cell set
+     */
+    public static final long BOARD_MASK=BOTTOM_MASK*((1L<<ROWS)-1);
+
+    private Bitboard() {
+    }
+
+    private static long bottomMask() {
+        long mask=0;
+        for(int col=0; col<COLS; col++) mask|=1L<<(col*COLUMN_BITS);
+        return mask;
+    }
+
+    /**
+     * Gets the bit of the cell at the given board position. Rows are numbered as in the
+     * {@code char[][]} board, so row 0 is the top row and row 5 the bottom row.
+     *
+     * @param row The row of the cell (0-5, top to bottom)
+     * @param col The column of the cell (0-6)
+     * @return a mask with only the bit of that cell set
+     */
+    public static long cell(int row, int col) {
+        return 1L<<(col*COLUMN_BITS+ROWS-1-row);
+    }
+
+    /**
+     * Gets the mask of all playable cells in a column.
+     *
+     * @param col The column (0-6)
+     * @return a mask with the 6 cells of the column set
+     */
+    public static long columnMask(int col) {
+        return ((1L<<ROWS)-1)<<(col*COLUMN_BITS);
+    }
+
+    /**
+     * Gets the mask of the top playable cell of a column.
+     *
+     * @param col The column (0-6)
+     * @return a mask with only the top cell of the column set
+     */
+    public static long topMask(int col) {
+        return 1L<<(ROWS-1+col*COLUMN_BITS);
+    }
+
+    /**
+     * Gets the mask of the bottom cell of a column.
+     *
+     * @param col The column (0-6)
+     * @return a mask with only the bottom cell of the column set
+     */
+    public static long bottomMask(int col) {
+        return 1L<<(col*COLUMN_BITS);
+    }
+
+    /**
+     * Gets the cells where the next checker of each column would land.
+     *
+     * @param occupied The stones of both players
+     * @return a mask with the lowest empty cell of every non-full column set
+     */
+    public static long playableCells(long occupied) {
+        return (occupied+BOTTOM_MASK)&BOARD_MASK;
+    }
+
+    /**
+     * Gets the empty cells that would complete a line of four for the given stones. The cells
+     * do not have to be playable yet.
+     *
+     * @param stones The stones of one player
+     * @param occupied The stones of both players
+     * @return a mask of the winning cells
+     */
+    public static long winningCells(long stones, long occupied) {
+        // vertical: three stones directly below
+        long cells=(stones<<1)&(stones<<2)&(stones<<3);
+        cells|=lineCells(stones, COLUMN_BITS);
+        cells|=lineCells(stones, COLUMN_BITS-1);
+        cells|=lineCells(stones, COLUMN_BITS+1);
+        return cells&(BOARD_MASK^occupied);
+    }
+
+    /**
+     * Gets the cells that complete four along one direction, with the three missing stones
+     * on either side of the cell.
+     */
+    private static long lineCells(long stones, int shift) {
+        long pair=(stones<<shift)&(stones<<(2*shift));
+        long cells=pair&(stones<<(3*shift));
+        cells|=pair&(stones>>>shift);
+        pair=(stones>>>shift)&(stones>>>(2*shift));
+        cells|=pair&(stones<<shift);
+        cells|=pair&(stones>>>(3*shift));
+        return cells;
+    }
+
+    /**
+     * Converts a mask of cells to a 7-bit mask of the columns those cells are in.
+     *
+     * @param cells Cells in bitboard layout
+     * @return a mask with bit {@code col} set for every column that contains one of the cells
+     */
+    public static int columnsOf(long cells) {
+        int columns=0;
+        for(int col=0; col<COLS; col++){
+            if((cells&columnMask(col))!=0) columns|=1<<col;
+        }
+        return columns;
+    }
+
+    /**
+     * Gets the columns in which the player to move wins immediately.
+     *
+     * @param own The stones of the player to move
+     * @param opponent The stones of the other player
+     * @return a 7-bit column mask
+     */
+    public static int winningColumns(long own, long opponent) {
+        long occupied=own|opponent;
+        return columnsOf(winningCells(own, occupied)&playableCells(occupied));
+    }
+
+    /**
+     * Gets the columns in which the opponent would win on their next move, so the player to move
+     * has to play there unless they can win right away. More than one bit set means the
+     * opponent cannot be stopped.
+     *
+     * @param own The stones of the player to move
+     * @param opponent The stones of the other player
+     * @return a 7-bit column mask
+     */
+    public static int forcedBlockColumns(long own, long opponent) {
+        long occupied=own|opponent;
+        return columnsOf(winningCells(opponent, occupied)&playableCells(occupied));
+    }
+
+    /**
+     * Gets the columns the player to move can play without giving the opponent an immediate win.
+     * Winning moves are always included. The mask is empty if every move loses.
+     *
+     * @param own The stones of the player to move
+     * @param opponent The stones of the other player
+     * @return a 7-bit column mask
+     */
+    public static int nonLosingColumns(long own, long opponent) {
+        long occupied=own|opponent;
+        long playable=playableCells(occupied);
+        long opponentWins=winningCells(opponent, occupied);
+        long forced=playable&opponentWins;
+        long candidates=playable;
+        if(forced!=0){
+            // two open threats cannot both be blocked
+            if((forced&(forced-1))!=0) candidates=0;
+            else candidates=forced;
+        }
+        // never play right below a cell where the opponent would win
+        candidates&=~(opponentWins>>>1);
+        return columnsOf(candidates)|winningColumns(own, opponent);
+    }
+
+    /**
+     * Gets a key that identifies a position uniquely. Within each column the key holds the red
+     * stones below a marker bit at the column height, so it fits in 49 bits and is never 0.
+     *
+     * @param red The stones of the red player
+     * @param blue The stones of the blue player
+     * @return the position key
+     */
+    public static long key(long red, long blue) {
+        return red+(red|blue)+BOTTOM_MASK;
+    }
+
+    /**
+     * Checks whether the given stones contain four in a row in any direction.
+     *
+     * @param stones The stones of one player
+     * @return {@code true} if there is a line of four, {@code false} otherwise
+     */
+    public static boolean hasFour(long stones) {
+        // vertical
+        long m=stones&(stones>>>1);
+        if((m&(m>>>2))!=0) return true;
+        // horizontal
+        m=stones&(stones>>>COLUMN_BITS);
+        if((m&(m>>>(2*COLUMN_BITS)))!=0) return true;
+        // diagonal going up to the left
+        m=stones&(stones>>>(COLUMN_BITS-1));
+        if((m&(m>>>(2*(COLUMN_BITS-1))))!=0) return true;
+        // diagonal going up to the right
+        m=stones&(stones>>>(COLUMN_BITS+1));
+        return (m&(m>>>(2*(COLUMN_BITS+1))))!=0;
+    }
+}
@@ -0,0 +1,106 @@
+package game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The BoardRenderer class writes the text form of a game board to a stream with one write call
+ * and without allocating.
+ *
+ * <p>The full board is rendered into a reusable byte buffer that already holds the fixed parts
+ * of the output (title, spaces, line breaks and column numbers), so only the 42 cells are filled
+ * in for every board. The output is the same as {@link Connect4#printTextBasedBoard(char[][])}
+ * has always printed.</p>
+ *
+ * <p>For spectators and logs that already know the previous board, the delta form only writes
+ * the cell changed by the last move as one line {@code <row> <col> <color>}, for example
+ * {@code 5 3 @}. Rows are numbered as in the {@code char[][]} board, 0 being the top row.</p>
+ *
+ * <p>A renderer is not thread-safe; use one per thread.</p>
+ */
+public class BoardRenderer {
+    // The same line break println uses
+    private static final byte[] NEWLINE=System.lineSeparator().getBytes();
+    private static final byte[] TITLE=("Current board:"+System.lineSeparator()).getBytes();
+    private static final byte[] FOOTER=("0 1 2 3 4 5 6"+System.lineSeparator()+System.lineSeparator()).getBytes();
+    // Each row is "c c c c c c c " and a line break
+    private static final int ROW_BYTES=Bitboard.COLS*2+NEWLINE.length;
+
+    private final byte[] board=new byte[TITLE.length+Bitboard.ROWS*ROW_BYTES+FOOTER.length];
+    private final byte[] delta=new byte[5+NEWLINE.length];
+
+    /**
+     * Creates a renderer with its buffer prepared for the fixed parts of the output.
+     */
+    public BoardRenderer() {
+        System.arraycopy(TITLE, 0, board, 0, TITLE.length);
+        for(int row=0; row<Bitboard.ROWS; row++){
+            int start=TITLE.length+row*ROW_BYTES;
+            for(int col=0; col<Bitboard.COLS; col++){
+                board[start+col*2]='.';
+                board[start+col*2+1]=' ';
+            }
+            System.arraycopy(NEWLINE, 0, board, start+Bitboard.COLS*2, NEWLINE.length);
+        }
+        System.arraycopy(FOOTER, 0, board, board.length-FOOTER.length, FOOTER.length);
+        delta[1]=' ';
+        delta[3]=' ';
+        System.arraycopy(NEWLINE, 0, delta, 5, NEWLINE.length);
+    }
+
+    /**
+     * Writes the whole board.
+     *
+     * @param cells A 6x7 board as returned by {@link GameContext#getBoard()}
+     * @param out The stream to write to
+     * @throws IOException if the stream fails
+     */
+    public void writeBoard(char[][] cells, OutputStream out) throws IOException {
+        for(int row=0; row<Bitboard.ROWS; row++){
+            int start=TITLE.length+row*ROW_BYTES;
+            for(int col=0; col<Bitboard.COLS; col++){
+                char cell=cells[row][col];
+                board[start+col*2]=(byte) (cell=='\u0000' ? '.' : cell);
+            }
+        }
+        out.write(board, 0, board.length);
+    }
+
+    /**
+     * Writes the whole board of a snapshot.
+     *
+     * @param snapshot The game state to render
+     * @param out The stream to write to
+     * @throws IOException if the stream fails
+     */
+    public void writeBoard(GameSnapshot snapshot, OutputStream out) throws IOException {
+        for(int row=0; row<Bitboard.ROWS; row++){
+            int start=TITLE.length+row*ROW_BYTES;
+            for(int col=0; col<Bitboard.COLS; col++){
+                char cell=snapshot.getCell(row, col);
+                board[start+col*2]=(byte) (cell=='\u0000' ? '.' : cell);
+            }
+        }
+        out.write(board, 0, board.length);
+    }
+
+    /**
+     * Writes only the cell changed by the last move of the snapshot. Nothing is written if no
+     * checker has been dropped yet.
+     *
+     * @param snapshot The game state after the move
+     * @param out The stream to write to
+     * @throws IOException if the stream fails
+     */
+    public void writeDelta(GameSnapshot snapshot, OutputStream out) throws IOException {
+        int col=snapshot.getLastColumn();
+        if(col<0) return;
+        long occupied=(snapshot.getRedStones()|snapshot.getBlueStones())&Bitboard.columnMask(col);
+        // the last checker is the top one of its column
+        int row=Bitboard.ROWS-Long.bitCount(occupied);
+        delta[0]=(byte) ('0'+row);
+        delta[2]=(byte) ('0'+col);
+        delta[4]=(byte) snapshot.getCell(row, col);
+        out.write(delta, 0, delta.length);
+    }
+}
@@ -0,0 +1,22 @@
+package game;
+
+/**
+ * The ComputerStrategy interface chooses the moves of computer players.
+ *
+ * <p>A strategy receives the position as two {@link Bitboard} masks and returns a column. It is
+ * called by {@link Connect4} without holding the lock of the game, so a long search never holds
+ * up readers of the game. The column is only played if no other move was made during the call;
+ * otherwise the strategy is asked again for the new position. The same strategy may be called
+ * from several threads at once, so a strategy that keeps state must guard it. If the returned
+ * column is invalid or full, the game falls back to a random column.</p>
+ */
+public interface ComputerStrategy {
+    /**
+     * Chooses the column for the player to move.
+     *
+     * @param own The stones of the player to move
+     * @param opponent The stones of the other player
+     * @return the column (0-6) to play
+     */
+    int chooseColumn(long own, long opponent);
+}
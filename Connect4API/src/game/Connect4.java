@@ -1,6 +1,10 @@
 package game;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.locks.StampedLock;
 
 import exceptions.GameException;
 
@@ -30,6 +34,25 @@ public class Connect4 {
      * '#' is represented as BLUE
      */
     public static final char BLUE='#';
+    // Result codes of stepAll
+    /**
+     * The move was played and the game goes on
+     */
+    public static final int STEP_CONTINUE=0;
+    /**
+     * The move was played and won the game
+     */
+    public static final int STEP_WIN=1;
+    /**
+     * The move was played and the game ended in a draw
+     */
+    public static final int STEP_DRAW=2;
+    /**
+     * The move was rejected because the column is invalid or full, or the game has finished
+     */
+    public static final int STEP_INVALID=3;
+    // Returned by step() instead of STEP_INVALID when the game had already finished
+    private static final int STEP_FINISHED=-1;
 
     // Game related attributes
     private int mode=-1;
@@ -41,6 +64,25 @@ public class Connect4 {
     private boolean isFinished;
     private GameContext gameContext;
 
+    // Compact copy of the board, one bit mask per colour (see Bitboard)
+    private long redStones;
+    private long blueStones;
+    private int moveCount;
+    // Columns of all checkers dropped so far, in order
+    private final byte[] moves=new byte[ROWS*COLS];
+    // Grows by one with every change of the game state
+    private long version;
+    // Guards the state read by getSnapshot(); readers use optimistic reads and never block writers
+    private final StampedLock stateLock=new StampedLock();
+    // Last snapshot handed out, reused while the version is unchanged and returned while a move is being made
+    private volatile GameSnapshot snapshot;
+    // Renders boards for printTextBasedBoard, one renderer per thread
+    private static final ThreadLocal<BoardRenderer> RENDERER=ThreadLocal.withInitial(BoardRenderer::new);
+    // Chooses the columns of computer players without a strategy
+    private final Random random=new Random();
+    // The pool this game is handed out by, null while it is idle or not pooled; changed by GamePool with CAS
+    volatile GamePool lender;
+
     /**** Constructors ****/
 
     /**
@@ -65,7 +107,8 @@ public class Connect4 {
         this.player1.setColor(RED);
         this.player2.setColor(BLUE);
         updatePlayers(this.mode);
-        this.gameContext=new GameContext(board, currentPlayer, GameResult.CONTINUE);
+        this.gameContext=new GameContext(board, currentPlayer);
+        this.snapshot=readSnapshot(0);
     }
 
     /**
@@ -83,7 +126,8 @@ public class Connect4 {
         this.player1.setColor(RED);
         this.player2.setColor(BLUE);
         this.currentPlayer = player1;
-        this.gameContext=new GameContext(board, currentPlayer, GameResult.CONTINUE);
+        this.gameContext=new GameContext(board, currentPlayer);
+        this.snapshot=readSnapshot(0);
     }
 
     /**
@@ -105,7 +149,8 @@ public class Connect4 {
         this.player2.setColor(BLUE);
         this.currentPlayer=player1;
         updatePlayers(this.mode);
-        this.gameContext=new GameContext(board, currentPlayer, GameResult.CONTINUE);
+        this.gameContext=new GameContext(board, currentPlayer);
+        this.snapshot=readSnapshot(0);
     }
 
     /*************************/
@@ -145,7 +190,11 @@ public class Connect4 {
                     board[row][col] = curColor;
                     lastDrop[0] = row;
                     lastDrop[1] = col;
+                    if(curColor==RED) redStones|=Bitboard.cell(row, col);
+                    else blueStones|=Bitboard.cell(row, col);
+                    moves[moveCount++]=(byte) col;
                     gameContext.setBoard(board);
+                    gameContext.setLastColumn(col);
                     break;
                 }
             }
@@ -196,9 +245,10 @@ public class Connect4 {
             }
         }
 
-        // check up-left to down-right direction
-        startRow = curRow + Math.min(3, ROWS - 1 - curRow);
-        startCol = curCol + Math.min(3, COLS - 1 - curCol);
+        // check up-left to down-right direction, starting on the same diagonal below the piece
+        int offset = Math.min(3, Math.min(ROWS - 1 - curRow, COLS - 1 - curCol));
+        startRow = curRow + offset;
+        startCol = curCol + offset;
         int count = 0;
         while (startRow >= 0 && startCol >= 0) {
             if (board[startRow][startCol] == curColor) {
@@ -214,9 +264,10 @@ public class Connect4 {
             startCol--;
         }
 
-        // check up-right to down-left direction
-        startRow = curRow + Math.min(3, ROWS - 1 - curRow);
-        startCol = curCol - Math.min(3, curCol);
+        // check up-right to down-left direction, starting on the same diagonal below the piece
+        offset = Math.min(3, Math.min(ROWS - 1 - curRow, curCol));
+        startRow = curRow + offset;
+        startCol = curCol - offset;
         count = 0;
         while (startRow >= 0 && startCol < COLS) {
             if (board[startRow][startCol] == curColor) {
@@ -276,6 +327,246 @@ public class Connect4 {
         }else return true;
     }
 
+    /**
+     * Puts the game back into its initial state. The caller holds the write lock.
+     */
+    private void clear() {
+        for (char[] row : board) {
+            Arrays.fill(row, '\u0000');
+        }
+        lastDrop[0]=0;
+        lastDrop[1]=0;
+        redStones=0;
+        blueStones=0;
+        moveCount=0;
+        isFinished=false;
+        currentPlayer=player1;
+        gameContext.setBoard(board);
+        gameContext.setCurrentPlayer(currentPlayer);
+        gameContext.setResult(GameResult.CONTINUE);
+        gameContext.setLastColumn(-1);
+    }
+
+    /**
+     * Plays the first {@code count} columns of the move history exactly as given, also for
+     * computer players. The caller holds the write lock and has cleared the game. Every move
+     * writes its column back into the same slot of the history, so replaying it in place is safe.
+     *
+     * @param count The number of moves to replay
+     * @throws GameException if a move is invalid; the game is cleared in that case
+     */
+    private void replayHistory(int count) throws GameException {
+        for(int i=0; i<count; i++){
+            int col=moves[i];
+            if(col<0 || col>6 || isFullCol(col) || isFinished){
+                clear();
+                throw new GameException("Invalid move "+col+" at ply "+i);
+            }
+            updateBoard(col);
+            judgeGame();
+            if(!isFinished) switchCurPlayer();
+        }
+    }
+
+    /**
+     * Plays one move for the current player: the given column for a human, the planned column or
+     * else a random column that is not full for a computer. The caller holds the write lock and has checked the move.
+     *
+     * @param column The column chosen by a human player
+     * @param planned The column chosen by the strategy of a computer player, -1 if there is none
+     * @throws GameException if the column is invalid
+     */
+    private void playMove(int column, int planned) throws GameException {
+        // drop piece according to current player
+        if(currentPlayer.isComputer()){
+            int col=planned;
+            if(col<0 || col>6 || board[0][col]!='\u0000') col=randomColumn(redStones|blueStones);
+            updateBoard(col);
+        }else{
+            updateBoard(column);
+        }
+        judgeGame();
+        if(!isFinished) switchCurPlayer();
+    }
+
+    /**
+     * Picks a random column that is not full.
+     *
+     * @param occupied The stones of both players
+     * @return the column, or 0 if the board is full
+     */
+    private int randomColumn(long occupied) {
+        int open=Bitboard.columnsOf(Bitboard.playableCells(occupied));
+        if(open==0) return 0;
+        int pick=random.nextInt(Integer.bitCount(open));
+        for(int col=0; col<COLS; col++){
+            if((open&(1<<col))!=0 && pick--==0) return col;
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the strategy that has to choose the next move, if the player to move is a computer
+     * with a strategy. The caller holds the lock.
+     *
+     * @return the strategy, or {@code null} if the next move needs no search
+     */
+    private ComputerStrategy strategyToMove() {
+        if(isFinished || !currentPlayer.isComputer()) return null;
+        return currentPlayer.getComputerStrategy();
+    }
+
+    /**
+     * Chooses the computer moves of a batch on a copy of the position, without holding the lock.
+     * The batch is followed up to the first invalid entry or the end of the game; computers
+     * without a strategy, or whose strategy returns a full column, get a random column here so
+     * that every later move is planned on the position that will really be played.
+     *
+     * @param columns The columns of the batch
+     * @param red The red stones before the batch
+     * @param blue The blue stones before the batch
+     * @return the column of every computer turn, -1 for the other entries
+     */
+    private int[] planBatch(int[] columns, long red, long blue) {
+        int[] planned=new int[columns.length];
+        Arrays.fill(planned, -1);
+        long occupied=red|blue;
+        for(int i=0; i<columns.length; i++){
+            int column=columns[i];
+            if(column<0 || column>6 || (occupied&Bitboard.topMask(column))!=0) break;
+            // player 1 is red and moves whenever the number of checkers is even
+            boolean redToMove=(Long.bitCount(occupied)&1)==0;
+            Player player=redToMove ? player1 : player2;
+            long own=redToMove ? red : blue;
+            if(player.isComputer()){
+                ComputerStrategy strategy=player.getComputerStrategy();
+                column=strategy==null ? -1 : strategy.chooseColumn(own, occupied^own);
+                if(column<0 || column>6 || (occupied&Bitboard.topMask(column))!=0) column=randomColumn(occupied);
+                planned[i]=column;
+            }
+            long cell=Bitboard.playableCells(occupied)&Bitboard.columnMask(column);
+            own|=cell;
+            occupied|=cell;
+            if(redToMove) red=own;
+            else blue=own;
+            if(Bitboard.hasFour(own) || occupied==Bitboard.BOARD_MASK) break;
+        }
+        return planned;
+    }
+
+    /**
+     * Takes back moves until only {@code count} checkers are left on the board. Only used to
+     * roll back a batch, so the game was still going on at that point.
+     *
+     * @param count The number of moves to keep
+     */
+    private void undoTo(int count) {
+        while(moveCount>count){
+            int col=moves[--moveCount];
+            for(int row=0; row<ROWS; row++){
+                if(board[row][col]!='\u0000'){
+                    board[row][col]='\u0000';
+                    redStones&=~Bitboard.cell(row, col);
+                    blueStones&=~Bitboard.cell(row, col);
+                    break;
+                }
+            }
+        }
+        if(moveCount>0){
+            int col=moves[moveCount-1];
+            int row=0;
+            while(board[row][col]=='\u0000') row++;
+            lastDrop[0]=row;
+            lastDrop[1]=col;
+        }
+        isFinished=false;
+        currentPlayer=moveCount%2==0 ? player1 : player2;
+        gameContext.setCurrentPlayer(currentPlayer);
+        gameContext.setResult(GameResult.CONTINUE);
+        gameContext.setLastColumn(moveCount==0 ? -1 : moves[moveCount-1]);
+    }
+
+    /**
+     * Plays one move without throwing, as used by {@link #stepAll(Connect4[], int[], int[])}.
+     * The column is checked like in {@code dropChecker}, also on computer turns.
+     *
+     * @param column The column (0-6) to play
+     * @return one of the {@code STEP_} result codes, or {@code STEP_FINISHED} if the game had
+     *         already finished
+     */
+    private int step(int column) {
+        int planned=-1;
+        long plannedVersion=-1;
+        while(true){
+            ComputerStrategy strategy;
+            long own;
+            long opponent;
+            long stamp=stateLock.writeLock();
+            try {
+                if(isFinished) return STEP_FINISHED;
+                if(column<0 || column>6 || board[0][column]!='\u0000') return STEP_INVALID;
+                strategy=strategyToMove();
+                if(strategy==null || plannedVersion==version){
+                    playMove(column, planned);
+                    version++;
+                    GameResult result=gameContext.getResult();
+                    if(result==GameResult.WIN) return STEP_WIN;
+                    return result==GameResult.DRAW ? STEP_DRAW : STEP_CONTINUE;
+                }
+                plannedVersion=version;
+                own=currentStones();
+                opponent=opponentStones();
+            } catch (GameException e) {
+                return STEP_INVALID;
+            } finally {
+                stateLock.unlockWrite(stamp);
+            }
+            // search without the lock, then play the move if no other move came in between
+            planned=strategy.chooseColumn(own, opponent);
+        }
+    }
+
+    /**
+     * Checks a move for {@code dropChecker}. The caller holds the write lock.
+     *
+     * @param column The column (0-6) to play
+     * @throws GameException if the column is invalid or full, or the game has finished
+     */
+    private void checkDrop(int column) throws GameException {
+        if(column<0 || column>6) {
+            throw new GameException("Column is invalid.");
+        }else if(isFullCol(column)){
+            throw new GameException("Column: "+column+" is full.");
+        }
+        if(isFinished) throw new GameException("game has finished");
+    }
+
+    /**
+     * Gets the stones of the player whose turn it is.
+     */
+    private long currentStones() {
+        return currentPlayer==player2 ? blueStones : redStones;
+    }
+
+    /**
+     * Gets the stones of the player who is waiting for their turn.
+     */
+    private long opponentStones() {
+        return currentPlayer==player2 ? redStones : blueStones;
+    }
+
+    /**
+     * Builds a snapshot from the current fields. The caller validates the read afterwards.
+     *
+     * @param curVersion The version read together with the fields
+     * @return a new snapshot
+     */
+    private GameSnapshot readSnapshot(long curVersion) {
+        Player player=currentPlayer==null ? player1 : currentPlayer;
+        return new GameSnapshot(redStones, blueStones, moveCount, moveCount==0 ? -1 : lastDrop[1],
+                player.getColor(), gameContext.getResult(), curVersion);
+    }
+
 
     /************************/
     /**** Public Methods ****/
@@ -417,7 +708,10 @@ public class Connect4 {
      *   <li><b>Dropping the Checker:</b>
      *       <ul>
      *           <li>If the current player is human, the checker is dropped in the specified column by calling {@code updateBoard(column)}.</li>
-     *           <li>If the current player is a computer, a random valid column is selected using {@code Random.nextInt(7)}, and the checker is dropped in that column.</li>
+     *           <li>If the current player is a computer, the column is chosen by the {@code ComputerStrategy} of the player,
+     *               or else a random column that is not full is selected,
+     *               and the checker is dropped in that column. The strategy searches without holding the lock of the game,
+     *               so readers are never held up by it; if another move is made during the search, the search is repeated.</li>
      *       </ul>
      *   </li>
      *   <li><b>Game Status Update:</b>
@@ -434,26 +728,118 @@ public class Connect4 {
      * </ol>
      */
     public GameContext dropChecker(int column) throws GameException {
-        // judge if the column is valid
-        if(column<0 || column>6) {
-            throw new GameException("Column is invalid.");
-        }else if(isFullCol(column)){
-            throw new GameException("Column: "+column+" is full.");
+        int planned=-1;
+        long plannedVersion=-1;
+        while(true){
+            ComputerStrategy strategy;
+            long own;
+            long opponent;
+            long stamp=stateLock.writeLock();
+            try {
+                // judge if the column is valid and the game is not over, under the lock so no other move comes in between
+                checkDrop(column);
+                strategy=strategyToMove();
+                if(strategy==null || plannedVersion==version){
+                    playMove(column, planned);
+                    version++;
+                    return gameContext;
+                }
+                plannedVersion=version;
+                own=currentStones();
+                opponent=opponentStones();
+            } finally {
+                stateLock.unlockWrite(stamp);
+            }
+            // search without the lock, then play the move if no other move came in between
+            planned=strategy.chooseColumn(own, opponent);
         }
-        // judge if the game is over
-        if(isFinished) throw new GameException("game has finished");
+    }
 
-        // drop piece according to current player
-        if(currentPlayer.isComputer()){
-            Random random=new Random();
-            int randomNum=random.nextInt(7);
-            updateBoard(randomNum);
-        }else{
-            updateBoard(column);
+    /**
+     * Drops a sequence of checkers as one atomic step and returns the updated game context.
+     *
+     * The columns are played in order, exactly as if {@link #dropChecker(int)} had been called for
+     * each of them, until the game is won or drawn; any columns after that are ignored. Either
+     * all moves up to that point are played or, if one of them is invalid, none are: the game is
+     * left unchanged and a {@code GameException} is thrown. Other threads reading
+     * {@link #getSnapshot()} see the state before or after the whole batch, never in between.
+     * The computer moves of the batch are searched before the lock is taken, on a copy of the
+     * position; if another move is made in the meantime, they are searched again.
+     *
+     * @param columns The columns (0-6) to play. As in {@code dropChecker}, entries for computer turns
+     *                must name an open column too, although the computer then picks its own.
+     * @return the game context after the last move played
+     * @throws GameException if the columns are null, the game has already finished, or an entry
+     *                       names an invalid or full column
+     *
+     * <p><b>Game State Modifications:</b></p>
+     * <ul>
+     *   <li><b>Game Board, Current Player, Game Finished Flag:</b> Updated as by the individual
+     *   {@code dropChecker} calls, or not at all if the batch is rejected.</li>
+     * </ul>
+     */
+    public GameContext dropCheckers(int[] columns) throws GameException {
+        if(columns==null) throw new GameException("Columns are null");
+        int[] planned=null;
+        long plannedVersion=-1;
+        while(true){
+            long red;
+            long blue;
+            long stamp=stateLock.writeLock();
+            try {
+                if(isFinished) throw new GameException("game has finished");
+                boolean search=player1.isComputer() && player1.getComputerStrategy()!=null
+                        || player2.isComputer() && player2.getComputerStrategy()!=null;
+                if(!search || plannedVersion==version){
+                    int start=moveCount;
+                    for(int i=0; i<columns.length && !isFinished; i++){
+                        int column=columns[i];
+                        if(column<0 || column>6 || isFullCol(column)){
+                            undoTo(start);
+                            throw new GameException("Move "+i+": column "+column+" is invalid or full.");
+                        }
+                        playMove(column, planned==null ? -1 : planned[i]);
+                    }
+                    version++;
+                    return gameContext;
+                }
+                plannedVersion=version;
+                red=redStones;
+                blue=blueStones;
+            } finally {
+                stateLock.unlockWrite(stamp);
+            }
+            // search without the lock, then play the batch if no other move came in between
+            planned=planBatch(columns, red, blue);
         }
-        judgeGame();
-        if(!isFinished) switchCurPlayer();
-        return gameContext;
+    }
+
+    /**
+     * Plays one move in each of many games and writes the outcome of every move into a
+     * primitive array.
+     *
+     * This is meant for bots and servers that drive hundreds of games at once: no exception is
+     * thrown for invalid moves and the games allocate nothing; only a {@code ComputerStrategy}
+     * attached to a player, such as {@code ai.SearchStrategy}, may allocate while it searches. A
+     * rejected move leaves its game unchanged and is reported as {@link #STEP_INVALID}. Moves are
+     * checked like in {@code dropChecker}, so the same columns are rejected by both.
+     *
+     * @param games The games to advance
+     * @param columns The column to play in each game, {@code columns[i]} for {@code games[i]}. As
+     *                in {@code dropChecker}, entries for computer turns must name an open column
+     *                too, although the computer then picks its own.
+     * @param results Receives one of {@link #STEP_CONTINUE}, {@link #STEP_WIN}, {@link #STEP_DRAW}
+     *                or {@link #STEP_INVALID} per game
+     * @return the number of games that are still going on after this step
+     */
+    public static int stepAll(Connect4[] games, int[] columns, int[] results) {
+        int running=0;
+        for(int i=0; i<games.length; i++){
+            int result=games[i].step(columns[i]);
+            results[i]=result==STEP_FINISHED ? STEP_INVALID : result;
+            if(result==STEP_CONTINUE || result==STEP_INVALID) running++;
+        }
+        return running;
     }
 
     /**
@@ -511,9 +897,241 @@ public class Connect4 {
         }
     }
 
+    /**
+     * Resets this game to its initial state so the instance can be reused for a new game.
+     *
+     * The board is cleared in place, player 1 moves first again and the existing
+     * {@code GameContext} is rewound to {@code CONTINUE}. The players, their names and the game
+     * mode are kept. No objects are allocated, which makes this method suitable for pooling
+     * game instances; {@link GamePool} also gives the players back a blank name and no strategy.
+     *
+     * <p><b>Game State Modifications:</b></p>
+     * <ul>
+     *     <li><b>Game Board:</b> Every cell is set back to {@code '\u0000'}.</li>
+     *     <li><b>Current Player:</b> Set back to the first player.</li>
+     *     <li><b>Game Finished Flag:</b> {@code isFinished} is set to {@code false}.</li>
+     *     <li><b>Game Context:</b> The same context instance is reused with result {@code CONTINUE}.</li>
+     * </ul>
+     */
+    public void reset() {
+        long stamp=stateLock.writeLock();
+        try {
+            clear();
+            version++;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Resets this game like {@link #reset()} and also gives both players their default state: a
+     * blank name and no {@code ComputerStrategy}. Used by {@link GamePool}, so that the next owner
+     * does not inherit the names and difficulty of the previous one.
+     */
+    void recycle() {
+        long stamp=stateLock.writeLock();
+        try {
+            clear();
+            player1.setPlayerName("");
+            player2.setPlayerName("");
+            player1.setComputerStrategy(null);
+            player2.setComputerStrategy(null);
+            version++;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the columns of all checkers dropped so far as a string of digits, for example
+     * {@code "3344"}. Together with the game mode this is enough to rebuild the game with
+     * {@link #restoreMoves(String)}, also on another machine.
+     *
+     * @return the move history, empty if no checker has been dropped
+     */
+    public String getMoves() {
+        long stamp=stateLock.readLock();
+        try {
+            char[] digits=new char[moveCount];
+            for(int i=0; i<moveCount; i++) digits[i]=(char) ('0'+moves[i]);
+            return new String(digits);
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Resets this game and replays the given move history, as returned by {@link #getMoves()}.
+     *
+     * Every column is played exactly as given, also for computer players, so that a game moved
+     * between processes ends up in the same state. If a move is invalid the game is reset and a
+     * {@code GameException} is thrown.
+     *
+     * <p><b>Game State Modifications:</b></p>
+     * <ul>
+     *     <li><b>Game Board, Current Player, Game Result:</b> Set to the state after the last move.</li>
+     * </ul>
+     *
+     * @param history The columns to play, one digit (0-6) per move
+     * @throws GameException if the history contains an invalid column, a move into a full column
+     *                       or a move after the game has finished
+     */
+    public void restoreMoves(String history) throws GameException {
+        if(history==null) throw new GameException("Moves are null");
+        if(history.length()>moves.length) throw new GameException("Too many moves: "+history.length());
+        long stamp=stateLock.writeLock();
+        try {
+            clear();
+            for(int i=0; i<history.length(); i++){
+                moves[i]=(byte) (history.charAt(i)-'0');
+            }
+            replayHistory(history.length());
+        } finally {
+            version++;
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writes the move history of this game in the compact form of {@link GameCodec}.
+     *
+     * @param out The buffer to write to
+     */
+    void encodeTo(ByteBuffer out) {
+        long stamp=stateLock.readLock();
+        try {
+            GameCodec.packMoves(mode, moves, moveCount, out);
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Resets this game and replays {@code count} moves read in the compact form of
+     * {@link GameCodec}. The moves are unpacked straight into the move history of this game.
+     *
+     * @param in The buffer positioned at the first packed move
+     * @param count The number of moves to read
+     * @throws GameException if a move is invalid; the game is reset in that case
+     */
+    void decodeFrom(ByteBuffer in, int count) throws GameException {
+        if(count>moves.length) throw new GameException("Too many moves: "+count);
+        long stamp=stateLock.writeLock();
+        try {
+            clear();
+            GameCodec.unpackMoves(in, moves, count);
+            replayHistory(count);
+        } finally {
+            version++;
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets the columns in which the current player wins immediately.
+     *
+     * This is answered from the bit boards of {@link #getSnapshot()} in constant time, without
+     * trying moves on the board or taking a lock.
+     *
+     * @return a 7-bit mask with bit {@code col} set for every winning column, 0 if the game has finished
+     */
+    public int getWinningColumns() {
+        return getSnapshot().getWinningColumns();
+    }
+
+    /**
+     * Gets the columns the current player must play to stop the opponent from winning on the
+     * next move. More than one bit set means the opponent cannot be stopped.
+     *
+     * @return a 7-bit column mask, 0 if the game has finished
+     */
+    public int getForcedBlockColumns() {
+        return getSnapshot().getForcedBlockColumns();
+    }
+
+    /**
+     * Gets the columns the current player can play without handing the opponent an immediate win.
+     * Winning columns are always included.
+     *
+     * @return a 7-bit column mask, 0 if the game has finished or every move loses
+     */
+    public int getNonLosingColumns() {
+        return getSnapshot().getNonLosingColumns();
+    }
+
+    /**
+     * Sets the strategy that chooses the moves of both players whenever they are computers.
+     * Use {@link Player#setComputerStrategy(ComputerStrategy)} to give the players different
+     * strategies.
+     *
+     * @param computerStrategy The strategy, or {@code null} for random play
+     */
+    public void setComputerStrategy(ComputerStrategy computerStrategy) {
+        long stamp=stateLock.writeLock();
+        try {
+            player1.setComputerStrategy(computerStrategy);
+            player2.setComputerStrategy(computerStrategy);
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets the game mode of this game.
+     *
+     * @return the game mode (1, 2 or 3), or -1 if the game was created without a mode
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns an immutable snapshot of the current game state that is safe to read from any thread.
+     *
+     * Unlike {@link #getGameContext()}, whose board is the live array of this game, the returned
+     * {@code GameSnapshot} never changes. Readers never take a lock: the state is read
+     * optimistically and read again if a move was made at the same time. If a move keeps the
+     * state busy, the last snapshot handed out is returned instead of waiting, so the result may
+     * not include the move being made. A new snapshot is only created after the game has changed,
+     * so all readers of the same state share one instance.
+     *
+     * <p><b>Game State Modifications:</b></p>
+     * <ul>
+     *     <li><b>No modifications:</b> This method does not modify the state of the game.</li>
+     * </ul>
+     *
+     * @return a snapshot of the board, the player to move and the game result
+     */
+    public GameSnapshot getSnapshot() {
+        GameSnapshot cached=snapshot;
+        for(int attempt=0; attempt<64; attempt++){
+            long stamp=stateLock.tryOptimisticRead();
+            if(stamp==0){
+                // a move is being made right now
+                Thread.onSpinWait();
+                continue;
+            }
+            cached=snapshot;
+            long curVersion=version;
+            if(cached.getVersion()==curVersion && stateLock.validate(stamp)){
+                return cached;
+            }
+            GameSnapshot fresh=readSnapshot(curVersion);
+            if(stateLock.validate(stamp)){
+                snapshot=fresh;
+                return fresh;
+            }
+        }
+        // a writer kept the state busy, hand out the last published state instead of waiting
+        return cached;
+    }
+
     /**
      * Gets game context that contains game board, current player and game result
      *
+     * The board of the returned context is the live board of this game and changes with every
+     * move. Threads other than the one playing the game should use {@link #getSnapshot()} instead.
+     *
      * @return current game context
      */
     public GameContext getGameContext(){
@@ -525,6 +1143,7 @@ public class Connect4 {
      *
      * This method displays the 6x7 game board, where empty cells are represented by dots ('.') and
      * filled cells are shown using their respective characters. It also prints the column numbers (0-6) at the bottom.
+     * The board is rendered by a per-thread {@link BoardRenderer} and printed with a single write.
      *
      * @param board A 2D character array representing the game board.
      *
@@ -536,14 +1155,11 @@ public class Connect4 {
      * </ul>
      */
     public static void printTextBasedBoard(char[][] board) {
-        System.out.println("Current board:");
-        for (char[] row : board) {
-            for (char cell : row) {
-                System.out.print((cell == '\u0000' ? '.' : cell) + " ");
-            }
-            System.out.println();
+        try {
+            RENDERER.get().writeBoard(board, System.out);
+        } catch (IOException e) {
+            // System.out never throws, it only sets its error flag
         }
-        System.out.println("0 1 2 3 4 5 6");
-        System.out.println();        
+        System.out.flush();
     }
 }
@@ -0,0 +1,189 @@
+package game;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+import exceptions.GameException;
+
+/**
+ * The GameCodec class defines the compact formats used to store and send positions and games.
+ *
+ * <p><b>Position:</b> a position is packed into one {@code long}, the position key of
+ * {@link Bitboard#key(long, long)}. In each column the key holds the red checkers below a marker
+ * bit at the column height, so both colours can be recovered with {@link #decodeRed(long)} and
+ * {@link #decodeBlue(long)}.</p>
+ *
+ * <p><b>Game:</b> a game is one header byte followed by one nibble (4 bits) per move, two moves
+ * per byte with the earlier move in the low nibble. The header holds the game mode in its top
+ * two bits (0 if the game has no mode) and the number of moves in its low six bits, so a whole
+ * game takes at most 22 bytes. The same bytes can be written as URL-safe Base64 text for links
+ * and logs.</p>
+ *
+ * <p>Encoding and decoding work directly on a {@code ByteBuffer} and on the move history of the
+ * game, without intermediate copies.</p>
+ */
+public final class GameCodec {
+    /**
+     * The largest number of bytes an encoded game can take
+     */
+    public static final int MAX_GAME_BYTES=1+(Bitboard.ROWS*Bitboard.COLS+1)/2;
+
+    private GameCodec() {
+    }
+
+    /**
+     * Packs a position into one {@code long}.
+     *
+     * @param red The red checkers in {@link Bitboard} layout
+     * @param blue The blue checkers in {@link Bitboard} layout
+     * @return the position key
+     */
+    public static long encodePosition(long red, long blue) {
+        return Bitboard.key(red, blue);
+    }
+
+    /**
+     * Packs the position of a snapshot into one {@code long}.
+     *
+     * @param snapshot The game state
+     * @return the position key
+     */
+    public static long encodePosition(GameSnapshot snapshot) {
+        return Bitboard.key(snapshot.getRedStones(), snapshot.getBlueStones());
+    }
+
+    /**
+     * Gets the red checkers of a packed position.
+     *
+     * @param key A position key
+     * @return the red checkers in {@link Bitboard} layout
+     */
+    public static long decodeRed(long key) {
+        return key&~markers(key)&Bitboard.BOARD_MASK;
+    }
+
+    /**
+     * Gets the blue checkers of a packed position.
+     *
+     * @param key A position key
+     * @return the blue checkers in {@link Bitboard} layout
+     */
+    public static long decodeBlue(long key) {
+        long occupied=markers(key)-Bitboard.BOTTOM_MASK;
+        return occupied&~decodeRed(key);
+    }
+
+    /**
+     * Gets the marker bit of every column, which is the highest set bit of each 7-bit group.
+     */
+    private static long markers(long key) {
+        long markers=0;
+        for(int col=0; col<Bitboard.COLS; col++){
+            long column=key&(Bitboard.columnMask(col)|Bitboard.topMask(col)<<1);
+            markers|=Long.highestOneBit(column);
+        }
+        return markers;
+    }
+
+    /**
+     * Writes a game in the compact form.
+     *
+     * @param game The game to encode
+     * @param out The buffer to write to, with at least {@link #MAX_GAME_BYTES} bytes remaining
+     */
+    public static void encodeGame(Connect4 game, ByteBuffer out) {
+        game.encodeTo(out);
+    }
+
+    /**
+     * Reads a game in the compact form into an existing game, replacing its state. The mode stored
+     * in the header is ignored; the game keeps its own mode and players.
+     *
+     * @param in The buffer positioned at the header byte
+     * @param game The game to restore
+     * @throws GameException if the data is truncated or contains an invalid move
+     */
+    public static void decodeGame(ByteBuffer in, Connect4 game) throws GameException {
+        try {
+            int header=in.get()&0xff;
+            game.decodeFrom(in, header&0x3f);
+        } catch (BufferUnderflowException e) {
+            throw new GameException("Encoded game is truncated", e);
+        }
+    }
+
+    /**
+     * Reads a game in the compact form into a new game with the stored mode and two new players.
+     *
+     * @param in The buffer positioned at the header byte
+     * @return the restored game
+     * @throws GameException if the data is truncated, has no valid mode or contains an invalid move
+     */
+    public static Connect4 decodeGame(ByteBuffer in) throws GameException {
+        if(!in.hasRemaining()) throw new GameException("Encoded game is truncated");
+        int mode=(in.get(in.position())&0xff)>>>6;
+        Connect4 game=new Connect4(mode, new Player(), new Player());
+        decodeGame(in, game);
+        return game;
+    }
+
+    /**
+     * Encodes a game as URL-safe Base64 text.
+     *
+     * @param game The game to encode
+     * @return the text form
+     */
+    public static String toText(Connect4 game) {
+        ByteBuffer buffer=ByteBuffer.allocate(MAX_GAME_BYTES);
+        encodeGame(game, buffer);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+
+    /**
+     * Decodes a game from its text form into a new game.
+     *
+     * @param text The text form as returned by {@link #toText(Connect4)}
+     * @return the restored game
+     * @throws GameException if the text is not a valid encoded game
+     */
+    public static Connect4 fromText(String text) throws GameException {
+        try {
+            return decodeGame(ByteBuffer.wrap(Base64.getUrlDecoder().decode(text)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new GameException("Invalid encoded game: "+text, e);
+        }
+    }
+
+    /**
+     * Writes the header and the packed moves.
+     *
+     * @param mode The game mode, 1-3, anything else is stored as 0
+     * @param moves The columns played
+     * @param count The number of moves to write
+     * @param out The buffer to write to
+     */
+    static void packMoves(int mode, byte[] moves, int count, ByteBuffer out) {
+        out.put((byte) ((mode>=1 && mode<=3 ? mode : 0)<<6|count));
+        for(int i=0; i<count; i+=2){
+            int high=i+1<count ? moves[i+1] : 0;
+            out.put((byte) (high<<4|moves[i]));
+        }
+    }
+
+    /**
+     * Reads packed moves into an array.
+     *
+     * @param in The buffer positioned after the header
+     * @param moves Receives the columns
+     * @param count The number of moves to read
+     */
+    static void unpackMoves(ByteBuffer in, byte[] moves, int count) {
+        for(int i=0; i<count; i+=2){
+            int packed=in.get();
+            moves[i]=(byte) (packed&0x0f);
+            if(i+1<count) moves[i+1]=(byte) ((packed>>>4)&0x0f);
+        }
+    }
+}
@@ -22,6 +22,8 @@ public class GameContext {
     private Player currentPlayer;
 
     private GameResult result;
+    // The column of the last checker dropped, -1 before the first one
+    private int lastColumn=-1;
 
     /**
      * Constructs a new {@code GameContext} with the given board, current player, and game result.
@@ -44,6 +46,19 @@ public class GameContext {
         this.result=result;
     }
 
+    /**
+     * Constructs the context of a new game that shares the live board of the game instead of
+     * copying it, as every context of a game does once the first checker is dropped.
+     *
+     * @param board The live board of the game
+     * @param currentPlayer The player who moves first
+     */
+    GameContext(char[][] board, Player currentPlayer) {
+        this.board=board;
+        this.currentPlayer=currentPlayer;
+        this.result=GameResult.CONTINUE;
+    }
+
     /**
      * Returns the current game board.
      *
@@ -76,6 +91,15 @@ public class GameContext {
         return result;
     }
 
+    /**
+     * Returns the column of the last checker dropped.
+     *
+     * @return The column (0-6), or -1 if no checker has been dropped yet.
+     */
+    public int getLastColumn() {
+        return lastColumn;
+    }
+
     /**
      * Sets the game board.
      *
@@ -102,4 +126,13 @@ public class GameContext {
     public void setResult(GameResult result) {
         this.result = result;
     }
+
+    /**
+     * Sets the column of the last checker dropped.
+     *
+     * @param lastColumn The column (0-6), or -1 if no checker has been dropped yet.
+     */
+    public void setLastColumn(int lastColumn) {
+        this.lastColumn = lastColumn;
+    }
 }
@@ -0,0 +1,104 @@
+package game;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import exceptions.GameException;
+
+/**
+ * The GamePool class keeps a bounded set of reusable {@code Connect4} instances for one game mode.
+ *
+ * <p>Servers and self-play loops that run many short games can {@link #acquire()} a game, play it
+ * and {@link #release(Connect4)} it afterwards instead of allocating a new game, two players and
+ * a new board every time. Released games are {@linkplain Connect4#reset() reset} before they are
+ * handed out again, and their players get back a blank name and lose their
+ * {@code ComputerStrategy}, so a borrower never inherits the names or difficulty of the previous
+ * owner. In steady state no objects are allocated per game.</p>
+ *
+ * <p>The pool is safe to use from several threads. A game must not be used by its previous owner
+ * after it has been released. Every game handed out is marked with the pool that lent it, and a
+ * release clears that mark with a compare-and-set, so releasing a game twice, or releasing a
+ * game that did not come from this pool, is rejected instead of giving the same game to two
+ * owners. The pool holds no reference to games it has handed out: a game that is never
+ * released is simply left to the garbage collector.</p>
+ */
+public class GamePool {
+    // Idle games waiting to be reused
+    private final ArrayBlockingQueue<Connect4> idle;
+    // Connect4.lender, set while a game is handed out
+    private static final VarHandle LENDER;
+    // The game mode of every game created by this pool
+    private final int mode;
+
+    static {
+        try {
+            LENDER=MethodHandles.lookup().findVarHandle(Connect4.class, "lender", GamePool.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Creates an empty pool that keeps at most {@code capacity} idle games of the given mode.
+     *
+     * @param mode The game mode of pooled games (1, 2 or 3)
+     * @param capacity The maximum number of idle games kept by the pool
+     * @throws GameException if the game mode is invalid or the capacity is not positive
+     */
+    public GamePool(int mode, int capacity) throws GameException {
+        if(mode<1 || mode>3) throw new GameException("Game not init");
+        if(capacity<=0) throw new GameException("Pool capacity must be positive");
+        this.mode=mode;
+        this.idle=new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Returns an idle game from the pool, or a new game if the pool is empty.
+     * The returned game is always in its initial state.
+     *
+     * @return a game ready to be played
+     * @throws GameException if a new game cannot be created
+     */
+    public Connect4 acquire() throws GameException {
+        Connect4 game=idle.poll();
+        if(game==null) game=new Connect4(mode, new Player(), new Player());
+        game.lender=this;
+        return game;
+    }
+
+    /**
+     * Resets the given game and its players and returns it to the pool. If the pool is already
+     * full the game is dropped and left to the garbage collector.
+     *
+     * @param game The game to return, ignored if {@code null}
+     * @return {@code true} if the game was kept by the pool, {@code false} otherwise
+     * @throws GameException if the game is not currently handed out by this pool
+     */
+    public boolean release(Connect4 game) throws GameException {
+        if(game==null) return false;
+        if(!LENDER.compareAndSet(game, this, (GamePool) null)){
+            throw new GameException("Game was not acquired from this pool or was already released");
+        }
+        game.recycle();
+        return idle.offer(game);
+    }
+
+    /**
+     * Gets the number of idle games currently held by the pool.
+     *
+     * @return the number of idle games
+     */
+    public int size() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the game mode of the games created by this pool.
+     *
+     * @return the game mode
+     */
+    public int getMode() {
+        return mode;
+    }
+}
@@ -0,0 +1,164 @@
+package game;
+
+import exceptions.GameException;
+
+/**
+ * The GameReplay class holds a recorded Connect4 game so that it can be viewed at any ply.
+ *
+ * <p>The moves are kept as one byte per column, together with a checkpoint of the board every
+ * {@code checkpointInterval} plies: two {@link Bitboard} masks of 8 bytes each, 16 bytes per
+ * checkpoint. To show a ply, the board of the nearest checkpoint at or before it is taken and at
+ * most {@code checkpointInterval - 1} moves are applied to it with single bit operations, so a
+ * seek costs the same whether it goes forwards or backwards and however far it jumps.</p>
+ *
+ * <p>A replay is immutable once created and is meant to be shared by every viewer of a game,
+ * each with its own {@link ReplayCursor}. The {@link GameSnapshot} of a ply is built the first
+ * time it is asked for and then returned to all viewers, so viewers do not copy boards. Two
+ * threads asking for the same ply at once may both build it; as snapshots are immutable, either
+ * copy is correct.</p>
+ */
+public final class GameReplay {
+    /**
+     * The number of plies between two checkpoints used when no interval is given
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL=8;
+
+    // Columns of the moves in the order they were played
+    private final byte[] moves;
+    private final int checkpointInterval;
+    // Board at ply i*checkpointInterval
+    private final long[] checkpointRed;
+    private final long[] checkpointBlue;
+    // Result after the last move; every earlier ply is CONTINUE
+    private final GameResult finalResult;
+    // Snapshots built so far, by ply
+    private final GameSnapshot[] snapshots;
+
+    private GameReplay(byte[] moves, int checkpointInterval) throws GameException {
+        if(checkpointInterval<=0) throw new GameException("Checkpoint interval must be positive");
+        this.moves=moves;
+        this.checkpointInterval=checkpointInterval;
+        this.checkpointRed=new long[moves.length/checkpointInterval+1];
+        this.checkpointBlue=new long[checkpointRed.length];
+        this.snapshots=new GameSnapshot[moves.length+1];
+        long red=0, blue=0;
+        GameResult result=GameResult.CONTINUE;
+        for(int ply=0; ply<moves.length; ply++){
+            if(ply%checkpointInterval==0){
+                checkpointRed[ply/checkpointInterval]=red;
+                checkpointBlue[ply/checkpointInterval]=blue;
+            }
+            if(result!=GameResult.CONTINUE) throw new GameException("Move at ply "+ply+" after the game has finished");
+            int col=moves[ply];
+            long cell=col<0 || col>=Bitboard.COLS ? 0 : Bitboard.playableCells(red|blue)&Bitboard.columnMask(col);
+            if(cell==0) throw new GameException("Invalid move "+col+" at ply "+ply);
+            if((ply&1)==0){
+                red|=cell;
+                if(Bitboard.hasFour(red)) result=GameResult.WIN;
+            }else{
+                blue|=cell;
+                if(Bitboard.hasFour(blue)) result=GameResult.WIN;
+            }
+            if(result==GameResult.CONTINUE && ply+1==Bitboard.ROWS*Bitboard.COLS) result=GameResult.DRAW;
+        }
+        if(moves.length%checkpointInterval==0){
+            checkpointRed[moves.length/checkpointInterval]=red;
+            checkpointBlue[moves.length/checkpointInterval]=blue;
+        }
+        this.finalResult=result;
+    }
+
+    /**
+     * Creates a replay of the moves played so far in a game, with the default checkpoint interval.
+     *
+     * @param game The game to replay
+     * @return the replay
+     * @throws GameException if the moves of the game cannot be replayed
+     */
+    public static GameReplay of(Connect4 game) throws GameException {
+        return of(game.getMoves(), DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Creates a replay of a move list in the format of {@link Connect4#getMoves()}.
+     *
+     * @param moves The columns played, one digit (0-6) per move
+     * @param checkpointInterval The number of plies between two checkpoints
+     * @return the replay
+     * @throws GameException if a move is invalid, follows the end of the game, or the interval is not positive
+     */
+    public static GameReplay of(String moves, int checkpointInterval) throws GameException {
+        if(moves.length()>Bitboard.ROWS*Bitboard.COLS) throw new GameException("Too many moves");
+        byte[] columns=new byte[moves.length()];
+        for(int i=0; i<columns.length; i++) columns[i]=(byte) (moves.charAt(i)-'0');
+        return new GameReplay(columns, checkpointInterval);
+    }
+
+    /**
+     * Gets the number of moves in the game, which is also the last ply a cursor can seek to.
+     *
+     * @return the number of moves
+     */
+    public int length() {
+        return moves.length;
+    }
+
+    /**
+     * Gets the column of a move.
+     *
+     * @param ply The index of the move, starting at 0
+     * @return the column (0-6)
+     */
+    public int getMove(int ply) {
+        return moves[ply];
+    }
+
+    /**
+     * Gets the result of the game after its last move.
+     *
+     * @return {@code WIN}, {@code DRAW}, or {@code CONTINUE} if the game was recorded unfinished
+     */
+    public GameResult getFinalResult() {
+        return finalResult;
+    }
+
+    /**
+     * Gets the snapshot of the game after the given number of moves. The same snapshot is
+     * returned every time the same ply is asked for.
+     *
+     * @param ply The number of moves played, from 0 to {@link #length()}
+     * @return the snapshot, with the ply as its version
+     * @throws GameException if the ply is out of range
+     */
+    public GameSnapshot getSnapshot(int ply) throws GameException {
+        if(ply<0 || ply>moves.length) throw new GameException("Ply "+ply+" is out of range");
+        GameSnapshot snapshot=snapshots[ply];
+        if(snapshot==null){
+            snapshot=buildSnapshot(ply);
+            snapshots[ply]=snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Builds the snapshot of a ply from the nearest checkpoint before it.
+     *
+     * @param ply The number of moves played
+     * @return a new snapshot
+     */
+    private GameSnapshot buildSnapshot(int ply) {
+        int checkpoint=ply/checkpointInterval;
+        long red=checkpointRed[checkpoint];
+        long blue=checkpointBlue[checkpoint];
+        for(int i=checkpoint*checkpointInterval; i<ply; i++){
+            long cell=Bitboard.playableCells(red|blue)&Bitboard.columnMask(moves[i]);
+            if((i&1)==0) red|=cell;
+            else blue|=cell;
+        }
+        GameResult result=ply==moves.length ? finalResult : GameResult.CONTINUE;
+        // as in Connect4, the turn does not pass on once the game has finished
+        boolean redToMove=result==GameResult.CONTINUE ? (ply&1)==0 : (ply&1)==1;
+        return new GameSnapshot(red, blue, ply, ply==0 ? -1 : moves[ply-1],
+                redToMove ? Connect4.RED : Connect4.BLUE, result, ply);
+    }
+}
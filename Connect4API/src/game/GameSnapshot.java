@@ -0,0 +1,179 @@
+package game;
+
+/**
+ * The GameSnapshot class is an immutable, compact view of a Connect4 game at one point in time.
+ *
+ * <p>The board is held as two bit masks, one per colour, in the layout described by
+ * {@link Bitboard}. Snapshots are published by {@link Connect4#getSnapshot()} and never change
+ * afterwards, so they can be shared freely between threads without copying.</p>
+ */
+public final class GameSnapshot {
+    // Stones of the red and the blue player
+    private final long redStones;
+    private final long blueStones;
+    // Number of checkers on the board
+    private final int moveCount;
+    // Column of the last checker, -1 before the first move
+    private final int lastColumn;
+    // Colour of the player whose turn it is
+    private final char currentColor;
+    private final GameResult result;
+    // Version of the game state this snapshot was taken from
+    private final long version;
+
+    /**
+     * Constructs a new snapshot.
+     *
+     * @param redStones The bit mask of the red checkers
+     * @param blueStones The bit mask of the blue checkers
+     * @param moveCount The number of checkers on the board
+     * @param lastColumn The column of the last checker, or -1 if the board is empty
+     * @param currentColor The colour of the player whose turn it is
+     * @param result The result of the game at this point
+     * @param version The version of the game state the snapshot was taken from
+     */
+    public GameSnapshot(long redStones, long blueStones, int moveCount, int lastColumn,
+                        char currentColor, GameResult result, long version) {
+        this.redStones=redStones;
+        this.blueStones=blueStones;
+        this.moveCount=moveCount;
+        this.lastColumn=lastColumn;
+        this.currentColor=currentColor;
+        this.result=result;
+        this.version=version;
+    }
+
+    /**
+     * Gets the bit mask of the red checkers.
+     *
+     * @return the red checkers in {@link Bitboard} layout
+     */
+    public long getRedStones() {
+        return redStones;
+    }
+
+    /**
+     * Gets the bit mask of the blue checkers.
+     *
+     * @return the blue checkers in {@link Bitboard} layout
+     */
+    public long getBlueStones() {
+        return blueStones;
+    }
+
+    /**
+     * Gets the number of checkers on the board.
+     *
+     * @return the number of moves played
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Gets the column of the last checker dropped.
+     *
+     * @return the column (0-6), or -1 if no checker has been dropped yet
+     */
+    public int getLastColumn() {
+        return lastColumn;
+    }
+
+    /**
+     * Gets the colour of the player whose turn it is. When the game is won this is the colour
+     * of the winner, as in {@code GameContext}.
+     *
+     * @return {@link Connect4#RED} or {@link Connect4#BLUE}
+     */
+    public char getCurrentColor() {
+        return currentColor;
+    }
+
+    /**
+     * Gets the result of the game at the time of the snapshot.
+     *
+     * @return {@code WIN}, {@code DRAW} or {@code CONTINUE}
+     */
+    public GameResult getResult() {
+        return result;
+    }
+
+    /**
+     * Gets the version of the game state this snapshot was taken from. The version grows by one
+     * with every change of the game, so two snapshots of the same game with the same version
+     * describe the same state.
+     *
+     * @return the state version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the columns in which the player to move wins immediately.
+     *
+     * @return a 7-bit mask with bit {@code col} set for every winning column, 0 if the game is over
+     */
+    public int getWinningColumns() {
+        if(result!=GameResult.CONTINUE) return 0;
+        return Bitboard.winningColumns(ownStones(), opponentStones());
+    }
+
+    /**
+     * Gets the columns the player to move must block because the opponent would win there next.
+     *
+     * @return a 7-bit column mask, 0 if the game is over
+     */
+    public int getForcedBlockColumns() {
+        if(result!=GameResult.CONTINUE) return 0;
+        return Bitboard.forcedBlockColumns(ownStones(), opponentStones());
+    }
+
+    /**
+     * Gets the columns the player to move can play without handing the opponent an immediate win.
+     *
+     * @return a 7-bit column mask, 0 if the game is over or every move loses
+     */
+    public int getNonLosingColumns() {
+        if(result!=GameResult.CONTINUE) return 0;
+        return Bitboard.nonLosingColumns(ownStones(), opponentStones());
+    }
+
+    private long ownStones() {
+        return currentColor==Connect4.RED ? redStones : blueStones;
+    }
+
+    private long opponentStones() {
+        return currentColor==Connect4.RED ? blueStones : redStones;
+    }
+
+    /**
+     * Gets the checker at the given board position.
+     *
+     * @param row The row (0-5, top to bottom)
+     * @param col The column (0-6)
+     * @return {@link Connect4#RED}, {@link Connect4#BLUE} or {@code '\u0000'} for an empty cell
+     */
+    public char getCell(int row, int col) {
+        long bit=Bitboard.cell(row, col);
+        if((redStones&bit)!=0) return Connect4.RED;
+        if((blueStones&bit)!=0) return Connect4.BLUE;
+        return '\u0000';
+    }
+
+    /**
+     * Builds a new 6x7 {@code char[][]} board from this snapshot, in the same format as
+     * {@link GameContext#getBoard()}.
+     *
+     * @return a new board array
+     */
+    public char[][] toBoard() {
+        char[][] board=new char[Bitboard.ROWS][Bitboard.COLS];
+        for(int row=0; row<Bitboard.ROWS; row++){
+            for(int col=0; col<Bitboard.COLS; col++){
+                board[row][col]=getCell(row, col);
+            }
+        }
+        return board;
+    }
+}
@@ -20,6 +20,8 @@ public class Player {
     private char color;
     // Indicates if the player is a computer
     private boolean isComputer;
+    // Chooses the moves of a computer player, random play if null
+    private ComputerStrategy computerStrategy;
 
     /**
      * Default constructor setting player name to blank
@@ -75,6 +77,24 @@ public class Player {
         isComputer = computer;
     }
 
+    /**
+     * Gets the strategy that chooses this player's moves when it is a computer.
+     *
+     * @return the strategy, or {@code null} for random play
+     */
+    public ComputerStrategy getComputerStrategy() {
+        return computerStrategy;
+    }
+
+    /**
+     * Sets the strategy that chooses this player's moves when it is a computer.
+     *
+     * @param computerStrategy the strategy, or {@code null} for random play
+     */
+    public void setComputerStrategy(ComputerStrategy computerStrategy) {
+        this.computerStrategy = computerStrategy;
+    }
+
     /**
      * Gets the player's piece color.
      *
@@ -0,0 +1,90 @@
+package game;
+
+import exceptions.GameException;
+
+/**
+ * The ReplayCursor class is one viewer's position in a {@link GameReplay}.
+ *
+ * <p>A cursor only holds the replay and the current ply, so any number of viewers can follow the
+ * same replay independently. Moving the cursor returns the shared snapshot of the new ply; see
+ * {@link GameReplay} for the cost of a seek. A cursor is not thread-safe, but the replay behind
+ * it is.</p>
+ */
+public class ReplayCursor {
+    private final GameReplay replay;
+    // Number of moves shown
+    private int ply;
+
+    /**
+     * Creates a cursor at the start of the replay, before the first move.
+     *
+     * @param replay The replay to view
+     */
+    public ReplayCursor(GameReplay replay) {
+        this.replay=replay;
+        this.ply=0;
+    }
+
+    /**
+     * Gets the replay this cursor views.
+     *
+     * @return the replay
+     */
+    public GameReplay getReplay() {
+        return replay;
+    }
+
+    /**
+     * Gets the number of moves currently shown.
+     *
+     * @return the current ply
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Gets the snapshot at the current ply.
+     *
+     * @return the shared snapshot
+     * @throws GameException never for a valid cursor
+     */
+    public GameSnapshot getSnapshot() throws GameException {
+        return replay.getSnapshot(ply);
+    }
+
+    /**
+     * Moves the cursor to the given ply, forwards or backwards.
+     *
+     * @param ply The number of moves to show, from 0 to {@code getReplay().length()}
+     * @return the snapshot at that ply
+     * @throws GameException if the ply is out of range; the cursor does not move
+     */
+    public GameSnapshot seek(int ply) throws GameException {
+        GameSnapshot snapshot=replay.getSnapshot(ply);
+        this.ply=ply;
+        return snapshot;
+    }
+
+    /**
+     * Moves the cursor one move forwards.
+     *
+     * @return {@code true} if the cursor moved, {@code false} if it was already at the last move
+     */
+    public boolean next() {
+        if(ply>=replay.length()) return false;
+        ply++;
+        return true;
+    }
+
+    /**
+     * Moves the cursor one move backwards.
+     *
+     * @return {@code true} if the cursor moved, {@code false} if it was already at the start
+     */
+    public boolean previous() {
+        if(ply<=0) return false;
+        ply--;
+        return true;
+    }
+}
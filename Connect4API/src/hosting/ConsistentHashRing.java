@@ -0,0 +1,103 @@
+package hosting;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The ConsistentHashRing class maps game IDs to worker nodes using consistent hashing.
+ *
+ * <p>Every node is placed on the ring at a number of virtual positions. A game belongs to the
+ * first node found clockwise from the hash of its ID. Adding or removing a node therefore only
+ * moves the games between that node and its neighbours, roughly {@code 1/N} of all games.</p>
+ *
+ * <p>This class is not thread-safe; {@code ShardRouter} guards it with its own lock.</p>
+ */
+public class ConsistentHashRing {
+    // Position on the ring -> node name
+    private final TreeMap<Long, String> ring;
+    private final int virtualNodes;
+
+    /**
+     * Creates an empty ring.
+     *
+     * @param virtualNodes The number of ring positions per node, higher values spread games more evenly
+     */
+    public ConsistentHashRing(int virtualNodes) {
+        if(virtualNodes<=0) throw new IllegalArgumentException("virtualNodes must be positive");
+        this.ring=new TreeMap<>();
+        this.virtualNodes=virtualNodes;
+    }
+
+    /**
+     * Creates a copy of a ring, so that a change can be prepared without touching the original.
+     *
+     * @param other The ring to copy
+     */
+    public ConsistentHashRing(ConsistentHashRing other) {
+        this.ring=new TreeMap<>(other.ring);
+        this.virtualNodes=other.virtualNodes;
+    }
+
+    /**
+     * Adds a node to the ring. Adding a node twice has no effect.
+     *
+     * @param node The name of the node, for example {@code "localhost:7001"}
+     */
+    public void addNode(String node) {
+        for(int i=0; i<virtualNodes; i++) ring.put(hash(node+"#"+i), node);
+    }
+
+    /**
+     * Removes a node from the ring.
+     *
+     * @param node The name of the node
+     */
+    public void removeNode(String node) {
+        for(int i=0; i<virtualNodes; i++) ring.remove(hash(node+"#"+i), node);
+    }
+
+    /**
+     * Gets the node that owns the given key.
+     *
+     * @param key The game ID
+     * @return the owning node, or {@code null} if the ring is empty
+     */
+    public String nodeFor(String key) {
+        if(ring.isEmpty()) return null;
+        SortedMap<Long, String> tail=ring.tailMap(hash(key));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * Gets the distinct nodes on the ring.
+     *
+     * @return the node names
+     */
+    public List<String> getNodes() {
+        List<String> nodes=new ArrayList<>();
+        for(Map.Entry<Long, String> entry : ring.entrySet()){
+            if(!nodes.contains(entry.getValue())) nodes.add(entry.getValue());
+        }
+        return nodes;
+    }
+
+    /**
+     * Hashes a string to a ring position with 64-bit FNV-1a followed by a final mix, so that
+     * similar IDs such as {@code game-1} and {@code game-2} land far apart.
+     */
+    static long hash(String key) {
+        long h=0xcbf29ce484222325L;
+        for(byte b : key.getBytes(StandardCharsets.UTF_8)){
+            h^=b;
+            h*=0x100000001b3L;
+        }
+        h^=h>>>33;
+        h*=0xff51afd7ed558ccdL;
+        h^=h>>>33;
+        return h;
+    }
+}
@@ -0,0 +1,302 @@
+package hosting;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ai.AiMetrics;
+import ai.Difficulty;
+import ai.Evaluator;
+import ai.SearchStrategy;
+import ai.SolverCache;
+import exceptions.GameException;
+import game.Connect4;
+import game.GameCodec;
+import game.GameContext;
+import game.GameSnapshot;
+import game.Player;
+
+/**
+ * The GameWorker class hosts the games of one shard in its own JVM and serves them over a
+ * line-based text protocol on localhost.
+ *
+ * <p>Every request is one line, every reply is one line starting with {@code OK} or {@code ERR}:</p>
+ * <ul>
+ *     <li>{@code NEW <id> <mode> [<difficulty>]} creates a game. With a difficulty, one of the
+ *         names of {@link Difficulty}, the computer players search at that level; without one
+ *         they play at random.</li>
+ *     <li>{@code DROP <id> <column>} drops a checker and replies
+ *         {@code OK <result> <color> <lastColumn>}.</li>
+ *     <li>{@code DROPS <id> <columns>} drops a sequence of checkers given as digits in one
+ *         atomic step and replies like {@code DROP}.</li>
+ *     <li>{@code STATE <id>} replies {@code OK <mode> <moves>}.</li>
+ *     <li>{@code THREATS <id>} replies {@code OK <winning> <forcedBlocks> <nonLosing>}, each a
+ *         7-bit column mask for the player to move.</li>
+ *     <li>{@code EXPORT <id>} replies {@code OK <code> [<difficulty>]} with the game in the text
+ *         form of {@code GameCodec} and the difficulty it was created with, if any. The game stays
+ *         on this worker until it is removed with {@code END}.</li>
+ *     <li>{@code IMPORT <id> <code> [<difficulty>]} rebuilds a game exported by another worker.
+ *         An ID that is already hosted is refused.</li>
+ *     <li>{@code END <id>} removes a finished or abandoned game.</li>
+ *     <li>{@code LIST} replies with the IDs of all hosted games.</li>
+ *     <li>{@code METRICS [RESET]} replies {@code OK <cpu> <cap> <level>=<moves>,<nodes>,<cpu> ...}
+ *         with the CPU nanoseconds spent by all computer players, the cap ({@code none} if there
+ *         is none) and the counters of every difficulty. With {@code RESET} the counters start
+ *         again at zero, which starts a new accounting period for the cap.</li>
+ *     <li>{@code CAP <millis>|none} sets the CPU time all computer players of the worker may
+ *         spend until the next {@code METRICS RESET}. Once it is used up they search with the
+ *         budget of {@link Difficulty#BEGINNER}.</li>
+ * </ul>
+ * <p>{@code METRICS} and {@code CAP} concern the worker itself and are sent to it directly,
+ * not through a {@code ShardRouter}.</p>
+ * <p>Games are handed between workers in the compact form of {@link GameCodec}, which holds the
+ * game mode and the played columns.</p>
+ *
+ * <p>Requests are executed without a lock of the worker: {@code Connect4} orders the moves of a
+ * game itself and searches computer moves without holding its lock, so {@code STATE},
+ * {@code THREATS} and {@code EXPORT} are answered while a computer move is searched.</p>
+ *
+ * <p>With a cache file, all computer players of the worker share one {@link SolverCache} in that
+ * file, so positions searched before a restart are not searched again.</p>
+ *
+ * <p>Usage: {@code java hosting.GameWorker <port> [<cacheFile>]}</p>
+ */
+public class GameWorker {
+    // 16 MB of cache entries in a new cache file
+    private static final int CACHE_ENTRIES=1<<20;
+
+    private final Map<String, Connect4> games=new ConcurrentHashMap<>();
+    // Difficulty of the hosted games that have one, so that it moves with the game
+    private final Map<Connect4, Difficulty> levels=new ConcurrentHashMap<>();
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections=ConcurrentHashMap.newKeySet();
+    // Shared by all strategies, as the cache may only be shared between strategies using one evaluator
+    private final Evaluator evaluator=new Evaluator();
+    private final SolverCache cache;
+    // Shared by all strategies, so that the CPU of every computer player counts against one cap
+    private final AiMetrics metrics=new AiMetrics();
+
+    /**
+     * Creates a worker listening on the given localhost port, without a cache.
+     *
+     * @param port The port, or 0 to pick a free one
+     * @throws IOException if the port cannot be opened
+     */
+    public GameWorker(int port) throws IOException {
+        this(port, null);
+    }
+
+    /**
+     * Creates a worker listening on the given localhost port.
+     *
+     * @param port The port, or 0 to pick a free one
+     * @param cacheFile The file of the cache of searched positions, created if it does not exist,
+     *                  or {@code null} for no cache
+     * @throws IOException if the port or the cache file cannot be opened
+     */
+    public GameWorker(int port, Path cacheFile) throws IOException {
+        this.cache=cacheFile==null ? null : SolverCache.open(cacheFile, CACHE_ENTRIES);
+        try {
+            this.serverSocket=new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            if(cache!=null) cache.close();
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        GameWorker worker=new GameWorker(Integer.parseInt(args[0]), args.length>1 ? Path.of(args[1]) : null);
+        System.out.println("Worker listening on port "+worker.getPort());
+        worker.serve();
+    }
+
+    /**
+     * Gets the port this worker listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server socket is closed. Each connection is served by its
+     * own thread.
+     */
+    public void serve() {
+        while(!serverSocket.isClosed()){
+            try {
+                Socket socket=serverSocket.accept();
+                Thread thread=new Thread(() -> handle(socket), "worker-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if(!serverSocket.isClosed()) System.err.println("Accept failed: "+e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the metrics all computer players of this worker record their moves in.
+     *
+     * @return the metrics, also used to set the CPU cap
+     */
+    public AiMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and writes the cache to disk.
+     *
+     * @throws IOException if a socket or the cache file cannot be closed
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        for(Socket socket : connections) socket.close();
+        if(cache!=null) cache.close();
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s=socket;
+             BufferedReader in=new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out=new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            connections.add(s);
+            if(serverSocket.isClosed()) return;
+            s.setTcpNoDelay(true);
+            String line;
+            while((line=in.readLine())!=null){
+                out.println(execute(line));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // client went away
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Executes one protocol request.
+     *
+     * @param line The request line
+     * @return the reply line
+     */
+    String execute(String line) {
+        String[] parts=line.trim().split(" ");
+        try {
+            switch(parts[0]){
+                case "NEW":
+                    return host(parts[1], new Connect4(Integer.parseInt(parts[2]), new Player(), new Player()),
+                            parts.length>3 ? parts[3] : null);
+                case "DROP":
+                    return moveReply(find(parts[1]).dropChecker(Integer.parseInt(parts[2])));
+                case "DROPS": {
+                    Connect4 game=find(parts[1]);
+                    int[] columns=new int[parts[2].length()];
+                    for(int i=0; i<columns.length; i++) columns[i]=parts[2].charAt(i)-'0';
+                    return moveReply(game.dropCheckers(columns));
+                }
+                case "STATE": {
+                    Connect4 game=find(parts[1]);
+                    return "OK "+game.getMode()+" "+game.getMoves();
+                }
+                case "THREATS": {
+                    GameSnapshot snapshot=find(parts[1]).getSnapshot();
+                    return "OK "+snapshot.getWinningColumns()+" "+snapshot.getForcedBlockColumns()
+                            +" "+snapshot.getNonLosingColumns();
+                }
+                case "EXPORT": {
+                    Connect4 game=find(parts[1]);
+                    Difficulty level=levels.get(game);
+                    return "OK "+GameCodec.toText(game)+(level==null ? "" : " "+level);
+                }
+                case "IMPORT":
+                    return host(parts[1], GameCodec.fromText(parts[2]), parts.length>3 ? parts[3] : null);
+                case "END": {
+                    Connect4 game=games.remove(parts[1]);
+                    if(game!=null) levels.remove(game);
+                    return "OK";
+                }
+                case "LIST":
+                    return "OK "+String.join(" ", games.keySet());
+                case "METRICS":
+                    return metrics(parts.length>1 && parts[1].equals("RESET"));
+                case "CAP":
+                    metrics.setCpuCapNanos(parts[1].equals("none") ? Long.MAX_VALUE : Long.parseLong(parts[1])*1_000_000);
+                    return "OK";
+                default:
+                    return "ERR Unknown command "+parts[0];
+            }
+        } catch (GameException e) {
+            return "ERR "+e.getMessage();
+        } catch (RuntimeException e) {
+            return "ERR Bad request: "+line;
+        }
+    }
+
+    /**
+     * Builds the reply of {@code DROP} and {@code DROPS} from the context the move returned.
+     *
+     * @param context The context of the game after the move
+     * @return the reply line
+     */
+    private static String moveReply(GameContext context) {
+        return "OK "+context.getResult()+" "+context.getCurrentPlayer().getColor()+" "+context.getLastColumn();
+    }
+
+    /**
+     * Builds the reply of {@code METRICS}.
+     *
+     * @param reset Whether to set the counters back to zero after reading them
+     * @return the reply line
+     */
+    private String metrics(boolean reset) {
+        long cap=metrics.getCpuCapNanos();
+        StringBuilder reply=new StringBuilder("OK ").append(metrics.getTotalCpuNanos())
+                .append(' ').append(cap==Long.MAX_VALUE ? "none" : Long.toString(cap));
+        for(Difficulty difficulty : Difficulty.values()){
+            reply.append(' ').append(difficulty).append('=').append(metrics.getMoves(difficulty))
+                    .append(',').append(metrics.getNodes(difficulty)).append(',').append(metrics.getCpuNanos(difficulty));
+        }
+        if(reset) metrics.reset();
+        return reply.toString();
+    }
+
+    /**
+     * Adds a game under an ID that is not hosted yet.
+     *
+     * @param id The ID of the game
+     * @param game The new game
+     * @param level The name of the difficulty of the computer players, or {@code null} for random play
+     * @return the reply line
+     */
+    private String host(String id, Connect4 game, String level) {
+        Difficulty difficulty=level==null ? null : Difficulty.valueOf(level);
+        if(difficulty!=null){
+            game.setComputerStrategy(new SearchStrategy(difficulty, evaluator, cache, metrics, new SplittableRandom()));
+            levels.put(game, difficulty);
+        }
+        if(games.putIfAbsent(id, game)!=null){
+            if(difficulty!=null) levels.remove(game);
+            return "ERR Game exists";
+        }
+        return "OK";
+    }
+
+    private Connect4 find(String id) throws GameException {
+        Connect4 game=games.get(id);
+        if(game==null) throw new GameException("Unknown game "+id);
+        return game;
+    }
+}
@@ -0,0 +1,397 @@
+package hosting;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import exceptions.GameException;
+
+/**
+ * The ShardRouter class sits in front of several {@code GameWorker} processes and forwards every
+ * request to the worker that owns the game, chosen by a {@code ConsistentHashRing} over the game ID.
+ *
+ * <p>Clients speak the same line protocol as {@code GameWorker}. When a worker is added or
+ * removed, only the games whose owner changes are moved: they are exported from the old worker
+ * in the compact form of {@code GameCodec} and imported into the new one. Requests are
+ * held back while games are being moved, so a client never sees a half-moved game.</p>
+ *
+ * <p>A move never loses a game. All games are first copied to their new workers. Only when
+ * every copy has been confirmed does the router switch to the new ring and remove the games
+ * from their old workers. If a copy fails, the copies made so far are removed again and the old
+ * ring stays in use, so every game is still served by the worker that has it. A copy that cannot
+ * be removed, even after retrying, is reported as an orphan (see {@link #getOrphans(String)}).
+ * The router leaves orphans out of later moves and removes an orphan before a game with the
+ * same ID is copied onto its worker again.</p>
+ *
+ * <p>A worker that does not reply within the timeout is treated like one that failed. A
+ * connection that failed is closed and opened again for the next request, so that a late reply
+ * can never be read as the reply to another request.</p>
+ *
+ * <p>Usage: {@code java hosting.ShardRouter <port> <host:port> [<host:port> ...]}</p>
+ */
+public class ShardRouter implements Closeable {
+    // Replaced as a whole once all games of a rebalance have been copied; guarded by rebalanceLock
+    private ConsistentHashRing ring=new ConsistentHashRing(128);
+    // Open connections per worker address
+    private final Map<String, BlockingQueue<WorkerConnection>> pools=new ConcurrentHashMap<>();
+    private final int connectionsPerWorker;
+    private final int timeoutMillis;
+    // Requests take the read lock, adding or removing a worker takes the write lock
+    private final ReentrantReadWriteLock rebalanceLock=new ReentrantReadWriteLock();
+    // Copies that could not be removed from a worker, by worker address; guarded by rebalanceLock
+    private final Map<String, Set<String>> orphans=new HashMap<>();
+    // How often the removal of a copy is tried before it is reported as an orphan
+    private static final int END_ATTEMPTS=3;
+
+    /**
+     * Creates a router without workers that waits up to 10 seconds for a reply.
+     *
+     * @param connectionsPerWorker The number of connections kept open to each worker, which limits
+     *                             the number of requests a worker serves in parallel
+     */
+    public ShardRouter(int connectionsPerWorker) {
+        this(connectionsPerWorker, 10_000);
+    }
+
+    /**
+     * Creates a router without workers.
+     *
+     * @param connectionsPerWorker The number of connections kept open to each worker, which limits
+     *                             the number of requests a worker serves in parallel
+     * @param timeoutMillis How long to wait for a worker to accept a connection or reply
+     */
+    public ShardRouter(int connectionsPerWorker, int timeoutMillis) {
+        this.connectionsPerWorker=connectionsPerWorker;
+        this.timeoutMillis=timeoutMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ShardRouter router=new ShardRouter(Runtime.getRuntime().availableProcessors());
+        for(int i=1; i<args.length; i++) router.addWorker(args[i]);
+        ServerSocket serverSocket=new ServerSocket(Integer.parseInt(args[0]), 128, InetAddress.getLoopbackAddress());
+        System.out.println("Router listening on port "+serverSocket.getLocalPort());
+        while(true){
+            Socket socket=serverSocket.accept();
+            Thread thread=new Thread(() -> router.serveClient(socket), "router-client");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Sends one request to the worker owning the game named in the request.
+     *
+     * @param request A protocol line such as {@code DROP game-1 3}
+     * @return the reply line of the worker
+     * @throws GameException if no worker is available or the worker cannot be reached
+     */
+    public String send(String request) throws GameException {
+        String[] parts=request.trim().split(" ", 3);
+        if(parts.length<2) throw new GameException("Request has no game id: "+request);
+        rebalanceLock.readLock().lock();
+        try {
+            String node=ring.nodeFor(parts[1]);
+            if(node==null) throw new GameException("No worker available");
+            return call(node, request);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a worker and moves the games it now owns from the other workers onto it.
+     *
+     * @param address The worker address as {@code host:port}
+     * @return the number of games moved
+     * @throws GameException if the worker is already registered, a worker cannot be reached or a
+     *                       game cannot be moved; the worker is not added in that case
+     */
+    public int addWorker(String address) throws GameException {
+        rebalanceLock.writeLock().lock();
+        try {
+            if(pools.containsKey(address)) throw new GameException("Worker "+address+" is already registered");
+            pools.put(address, connect(address));
+            try {
+                ConsistentHashRing next=new ConsistentHashRing(ring);
+                next.addNode(address);
+                Map<String, String> moves=new LinkedHashMap<>();
+                for(String node : ring.getNodes()){
+                    for(String id : listGames(node)){
+                        if(address.equals(next.nodeFor(id))) moves.put(id, node);
+                    }
+                }
+                rebalance(next, moves);
+                return moves.size();
+            } catch (GameException e) {
+                closePool(pools.remove(address));
+                throw e;
+            }
+        } finally {
+            rebalanceLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a worker after moving all of its games to the remaining workers.
+     *
+     * @param address The worker address as {@code host:port}
+     * @return the number of games moved
+     * @throws GameException if a worker cannot be reached or a game cannot be moved; the worker
+     *                       keeps its games and stays registered in that case
+     */
+    public int removeWorker(String address) throws GameException {
+        rebalanceLock.writeLock().lock();
+        try {
+            if(!pools.containsKey(address)) throw new GameException("Unknown worker "+address);
+            ConsistentHashRing next=new ConsistentHashRing(ring);
+            next.removeNode(address);
+            Map<String, String> moves=new LinkedHashMap<>();
+            for(String id : listGames(address)) moves.put(id, address);
+            if(!moves.isEmpty() && next.getNodes().isEmpty()){
+                throw new GameException("Cannot remove the last worker while it hosts games");
+            }
+            rebalance(next, moves);
+            closePool(pools.remove(address));
+            orphans.remove(address);
+            return moves.size();
+        } finally {
+            rebalanceLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the IDs of the copies the router failed to remove from a worker. The ring does not
+     * lead to them; they are removed before a game with the same ID is copied there again, or
+     * can be removed by hand with {@code END}.
+     *
+     * @param address The worker address as {@code host:port}
+     * @return the IDs of the orphaned copies, empty if there are none
+     */
+    public Set<String> getOrphans(String address) {
+        rebalanceLock.readLock().lock();
+        try {
+            Set<String> ids=orphans.get(address);
+            return ids==null ? Set.of() : Set.copyOf(ids);
+        } finally {
+            rebalanceLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Closes all worker connections.
+     */
+    @Override
+    public void close() {
+        for(BlockingQueue<WorkerConnection> pool : pools.values()) closePool(pool);
+        pools.clear();
+    }
+
+    /**
+     * Moves games to their owners in the given ring and makes that ring current. The caller
+     * holds the write lock.
+     *
+     * @param next The ring after the change
+     * @param moves The games whose owner changes, each mapped to the worker that has it now
+     * @throws GameException if a game cannot be copied; nothing has changed in that case
+     */
+    private void rebalance(ConsistentHashRing next, Map<String, String> moves) throws GameException {
+        List<String> copied=new ArrayList<>();
+        try {
+            for(Map.Entry<String, String> move : moves.entrySet()){
+                copyGame(move.getKey(), move.getValue(), next.nodeFor(move.getKey()));
+                copied.add(move.getKey());
+            }
+        } catch (GameException e) {
+            for(String id : copied) endCopy(next.nodeFor(id), id);
+            throw e;
+        }
+        ring=next;
+        for(Map.Entry<String, String> move : moves.entrySet()) endCopy(move.getValue(), move.getKey());
+    }
+
+    /**
+     * Copies a game to another worker. The game stays on the old worker. An orphaned copy of the
+     * same ID on the new worker is removed first.
+     */
+    private void copyGame(String id, String from, String to) throws GameException {
+        String state=call(from, "EXPORT "+id);
+        if(!state.startsWith("OK")) throw new GameException("Export of "+id+" failed: "+state);
+        Set<String> stale=orphans.get(to);
+        if(stale!=null && stale.contains(id)){
+            String reply=call(to, "END "+id);
+            if(!reply.startsWith("OK")) throw new GameException("Removing the orphaned copy of "+id+" from "+to+" failed: "+reply);
+            stale.remove(id);
+        }
+        String reply=call(to, "IMPORT "+id+state.substring(2));
+        if(!reply.startsWith("OK")) throw new GameException("Import of "+id+" failed: "+reply);
+    }
+
+    /**
+     * Removes a copy that is no longer routed to a worker. The removal is tried a few times; if
+     * it still fails, the copy is recorded as an orphan and reported, as the ring no longer leads
+     * to it. The caller holds the write lock.
+     */
+    private void endCopy(String node, String id) {
+        String failure=null;
+        for(int attempt=0; attempt<END_ATTEMPTS; attempt++){
+            try {
+                String reply=call(node, "END "+id);
+                if(reply.startsWith("OK")) return;
+                failure=reply;
+            } catch (GameException e) {
+                failure=e.getMessage();
+            }
+        }
+        orphans.computeIfAbsent(node, k -> new HashSet<>()).add(id);
+        System.err.println("Removing "+id+" from "+node+" failed, the copy is left as an orphan: "+failure);
+    }
+
+    private static void closePool(BlockingQueue<WorkerConnection> pool) {
+        if(pool!=null) for(WorkerConnection connection : pool) connection.close();
+    }
+
+    private List<String> listGames(String node) throws GameException {
+        String reply=call(node, "LIST");
+        if(!reply.startsWith("OK")) throw new GameException("List on "+node+" failed: "+reply);
+        String ids=reply.substring(2).trim();
+        if(ids.isEmpty()) return List.of();
+        List<String> games=new ArrayList<>(List.of(ids.split(" ")));
+        // orphaned copies are not served from this worker and must not be moved
+        Set<String> stale=orphans.get(node);
+        if(stale!=null) games.removeAll(stale);
+        return games;
+    }
+
+    private String call(String node, String request) throws GameException {
+        BlockingQueue<WorkerConnection> pool=pools.get(node);
+        if(pool==null) throw new GameException("Unknown worker "+node);
+        WorkerConnection connection;
+        try {
+            connection=pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GameException("Interrupted while waiting for "+node, e);
+        }
+        try {
+            return connection.call(request);
+        } catch (IOException e) {
+            // the reply stream may be out of step with the requests, the next call reconnects
+            connection.close();
+            throw new GameException("Worker "+node+" failed", e);
+        } finally {
+            pool.offer(connection);
+        }
+    }
+
+    private BlockingQueue<WorkerConnection> connect(String address) throws GameException {
+        BlockingQueue<WorkerConnection> pool=new ArrayBlockingQueue<>(connectionsPerWorker);
+        String[] hostPort=address.split(":");
+        try {
+            for(int i=0; i<connectionsPerWorker; i++){
+                WorkerConnection connection=new WorkerConnection(hostPort[0], Integer.parseInt(hostPort[1]), timeoutMillis);
+                pool.add(connection);
+                connection.open();
+            }
+        } catch (IOException e) {
+            for(WorkerConnection connection : pool) connection.close();
+            throw new GameException("Cannot connect to worker "+address, e);
+        }
+        return pool;
+    }
+
+    private void serveClient(Socket socket) {
+        try (Socket s=socket;
+             BufferedReader in=new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out=new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            s.setTcpNoDelay(true);
+            String line;
+            while((line=in.readLine())!=null){
+                String reply;
+                try {
+                    reply=send(line);
+                } catch (GameException e) {
+                    reply="ERR "+e.getMessage();
+                }
+                out.println(reply);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    /**
+     * One blocking request/reply connection to a worker. It is only used by the thread that took
+     * it from the pool. After {@link #close()} the next call opens a new socket.
+     */
+    private static class WorkerConnection implements Closeable {
+        private final String host;
+        private final int port;
+        private final int timeoutMillis;
+        // null while closed
+        private Socket socket;
+        private BufferedReader in;
+        private PrintWriter out;
+
+        WorkerConnection(String host, int port, int timeoutMillis) {
+            this.host=host;
+            this.port=port;
+            this.timeoutMillis=timeoutMillis;
+        }
+
+        void open() throws IOException {
+            if(socket!=null) return;
+            Socket s=new Socket();
+            try {
+                s.connect(new InetSocketAddress(host, port), timeoutMillis);
+                s.setSoTimeout(timeoutMillis);
+                s.setTcpNoDelay(true);
+                in=new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                out=new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                s.close();
+                throw e;
+            }
+            socket=s;
+        }
+
+        String call(String request) throws IOException {
+            open();
+            out.println(request);
+            if(out.checkError()) throw new IOException("Connection closed");
+            String reply=in.readLine();
+            if(reply==null) throw new IOException("Connection closed");
+            return reply;
+        }
+
+        @Override
+        public void close() {
+            if(socket==null) return;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+            socket=null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checks the capacity of new {@link SolverCache} files and the header check of existing ones.
+ */
+public class SolverCacheTest {
+    public static void main(String[] args) throws Exception {
+        Path dir=Files.createTempDirectory("solver-cache");
+        try {
+            check(capacity(dir, 1)==4, "one bucket at least");
+            check(capacity(dir, 4)==4, "4 entries stay 4");
+            check(capacity(dir, 5)==8, "5 entries round up to 8");
+            check(capacity(dir, 8)==8, "8 entries stay 8");
+            check(capacity(dir, 1000)==1024, "1000 entries round up to 1024");
+            check(capacity(dir, 1<<20)==1<<20, "powers of two are kept");
+
+            Path file=dir.resolve("kept.cache");
+            try(SolverCache cache=SolverCache.open(file, 64)){
+                cache.put(42, 7, 12, SolverCache.EXACT);
+            }
+            try(SolverCache cache=SolverCache.open(file, 4096)){
+                check(cache.capacity()==64, "existing file keeps its size");
+                long value=cache.get(42);
+                check(SolverCache.scoreOf(value)==7 && SolverCache.depthOf(value)==12, "entry survives reopening");
+            }
+
+            for(int buckets : new int[]{0, -8, 3, 12}){
+                writeBuckets(file, buckets);
+                try {
+                    SolverCache.open(file, 64).close();
+                    check(false, "bucket count "+buckets+" is rejected");
+                } catch (IOException e) {
+                    // expected
+                }
+            }
+        } finally {
+            try(var files=Files.list(dir)){
+                for(Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(dir);
+        }
+        System.out.println("SolverCacheTest passed");
+    }
+
+    private static long capacity(Path dir, int maxEntries) throws IOException {
+        Path file=dir.resolve("size-"+maxEntries+".cache");
+        try(SolverCache cache=SolverCache.open(file, maxEntries)){
+            return cache.capacity();
+        }
+    }
+
+    // Overwrites the bucket count in the header of a cache file
+    private static void writeBuckets(Path file, int buckets) throws IOException {
+        try(FileChannel channel=FileChannel.open(file, StandardOpenOption.WRITE)){
+            ByteBuffer value=ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, buckets);
+            channel.write(value, 12);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
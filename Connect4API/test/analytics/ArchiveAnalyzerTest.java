@@ -0,0 +1,61 @@
+package analytics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Checks that splitting an archive into byte ranges counts every record exactly once, whatever
+ * the range size and however lines fall on range boundaries.
+ */
+public class ArchiveAnalyzerTest {
+    public static void main(String[] args) throws Exception {
+        Path archive=Files.createTempFile("archive", ".txt");
+        try {
+            ArchiveAnalyzer.generate(1000, archive);
+            compare(archive);
+
+            // carriage returns, empty lines, a line far longer than the read buffer and no final line break
+            StringBuilder text=new StringBuilder("2 3344\r\n\n1 0123456\n");
+            text.append("3 ");
+            for(int i=0; i<100_000; i++) text.append('1');
+            text.append("\n1 33\n2 4");
+            Files.write(archive, text.toString().getBytes(StandardCharsets.US_ASCII));
+            GameStats stats=compare(archive);
+            check(stats.getGames()==4, "four valid records, got "+stats.getGames());
+            check(stats.getInvalidRecords()==1, "one invalid record, got "+stats.getInvalidRecords());
+        } finally {
+            Files.deleteIfExists(archive);
+        }
+        System.out.println("ArchiveAnalyzerTest passed");
+    }
+
+    // Analyses the archive with several range sizes and compares with reading it line by line
+    private static GameStats compare(Path archive) throws Exception {
+        GameStats expected=new GameStats();
+        List<String> lines=Files.readAllLines(archive, StandardCharsets.US_ASCII);
+        for(String line : lines){
+            if(line.isEmpty()) continue;
+            if(line.length()>1000) expected.acceptInvalid();
+            else expected.accept(line);
+        }
+        String report=report(expected);
+        for(int rangeBytes : new int[]{7, 45, 46, 1000, 65536, ArchiveAnalyzer.RANGE_BYTES}){
+            check(report.equals(report(ArchiveAnalyzer.analyze(archive, rangeBytes))), "same result with ranges of "+rangeBytes+" bytes");
+        }
+        return expected;
+    }
+
+    private static String report(GameStats stats) {
+        ByteArrayOutputStream out=new ByteArrayOutputStream();
+        stats.print(new PrintStream(out, true), 10);
+        return stats.getGames()+" "+stats.getInvalidRecords()+"\n"+out;
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
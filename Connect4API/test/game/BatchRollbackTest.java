@@ -0,0 +1,85 @@
+package game;
+
+import java.util.Arrays;
+
+import exceptions.GameException;
+
+/**
+ * Checks that {@link Connect4#dropCheckers(int[])} plays a batch as one step and leaves the game
+ * untouched when any entry is rejected.
+ */
+public class BatchRollbackTest {
+    public static void main(String[] args) throws Exception {
+        Connect4 game=new Connect4(1, new Player(), new Player());
+        game.dropCheckers(new int[]{3, 3, 4});
+        check(game.getMoves().equals("334"), "valid batch is played in order");
+        check(game.getSnapshot().getVersion()==1, "a batch is one version step");
+
+        // column 3 overflows at the fifth entry; everything before it must be undone
+        expectRejected(game, new int[]{2, 3, 3, 3, 3, 3});
+        expectRejected(game, new int[]{0, 1, 7});
+        expectRejected(game, new int[]{0, -1});
+
+        // moves after a win are ignored instead of rejected
+        Connect4 win=new Connect4(1, new Player(), new Player());
+        win.dropCheckers(new int[]{0, 1, 0, 1, 0, 1, 0, 9, 9});
+        check(win.getGameContext().getResult()==GameResult.WIN, "fourth checker in column 0 wins");
+        check(win.getMoves().length()==7, "entries after the win are ignored");
+        expectRejected(win, new int[]{2});
+
+        // computer turns are checked like in dropChecker
+        Connect4 computer=new Connect4(2, new Player(), new Player());
+        expectRejected(computer, new int[]{3, 9});
+        computer.dropCheckers(new int[]{3, 0});
+        check(computer.getMoves().length()==2, "computer entry with an open column is played");
+        // computer moves of a batch are searched on the position they are played in
+        ComputerStrategy strategy=(own, opponent) -> {
+            long occupied=own|opponent;
+            // a fixed choice that depends on which stones belong to whom
+            int col=Math.floorMod(Long.hashCode(own*31-opponent*7), Bitboard.COLS);
+            while((occupied&Bitboard.topMask(col))!=0) col=(col+1)%Bitboard.COLS;
+            return col;
+        };
+        Connect4 single=new Connect4(3, new Player(), new Player());
+        single.setComputerStrategy(strategy);
+        while(single.getGameContext().getResult()==GameResult.CONTINUE){
+            int col=0;
+            while(single.getGameContext().getBoard()[0][col]!='\u0000') col++;
+            single.dropChecker(col);
+        }
+        int[] played=new int[single.getMoves().length()];
+        for(int i=0; i<played.length; i++) played[i]=single.getMoves().charAt(i)-'0';
+        Connect4 batch=new Connect4(3, new Player(), new Player());
+        batch.setComputerStrategy(strategy);
+        batch.dropCheckers(played);
+        check(batch.getMoves().equals(single.getMoves()), "batch plays the moves of single drops, got "+batch.getMoves());
+        System.out.println("BatchRollbackTest passed");
+    }
+
+    private static void expectRejected(Connect4 game, int[] columns) {
+        String moves=game.getMoves();
+        GameSnapshot before=game.getSnapshot();
+        char[][] board=game.getGameContext().getBoard();
+        char[][] boardBefore=new char[board.length][];
+        for(int row=0; row<board.length; row++) boardBefore[row]=board[row].clone();
+        Player playerBefore=game.getGameContext().getCurrentPlayer();
+        try {
+            game.dropCheckers(columns);
+            check(false, "batch "+Arrays.toString(columns)+" is rejected");
+        } catch (GameException e) {
+            // expected
+        }
+        GameSnapshot after=game.getSnapshot();
+        check(game.getMoves().equals(moves), "moves are unchanged after "+Arrays.toString(columns));
+        check(after.getRedStones()==before.getRedStones() && after.getBlueStones()==before.getBlueStones()
+                && after.getMoveCount()==before.getMoveCount() && after.getLastColumn()==before.getLastColumn()
+                && after.getResult()==before.getResult(), "snapshot is unchanged after "+Arrays.toString(columns));
+        check(Arrays.deepEquals(game.getGameContext().getBoard(), boardBefore), "board is unchanged");
+        check(game.getGameContext().getCurrentPlayer()==playerBefore, "current player is unchanged");
+        check(game.getGameContext().getLastColumn()==before.getLastColumn(), "last column is unchanged");
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
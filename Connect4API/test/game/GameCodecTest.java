@@ -0,0 +1,83 @@
+package game;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import exceptions.GameException;
+
+/**
+ * Checks that positions and games survive a round trip through every form of {@link GameCodec}.
+ */
+public class GameCodecTest {
+    public static void main(String[] args) throws Exception {
+        Random random=new Random(37);
+        ByteBuffer buffer=ByteBuffer.allocate(GameCodec.MAX_GAME_BYTES);
+        for(int round=0; round<5000; round++){
+            int mode=1+round%3;
+            Connect4 game=new Connect4(1, new Player(), new Player());
+            // play until the game ends now and then, so the longest games are covered
+            int length=round%10==0 ? Bitboard.ROWS*Bitboard.COLS : random.nextInt(Bitboard.ROWS*Bitboard.COLS+1);
+            Connect4 builder=new Connect4(1, new Player(), new Player());
+            while(builder.getMoves().length()<length && builder.getGameContext().getResult()==GameResult.CONTINUE){
+                int col=random.nextInt(Bitboard.COLS);
+                if(builder.getGameContext().getBoard()[0][col]=='\u0000') builder.dropChecker(col);
+            }
+            String moves=builder.getMoves();
+            Connect4 source=new Connect4(mode, new Player(), new Player());
+            source.restoreMoves(moves);
+
+            GameSnapshot snapshot=source.getSnapshot();
+            long key=GameCodec.encodePosition(snapshot);
+            check(GameCodec.decodeRed(key)==snapshot.getRedStones(), "red stones of "+moves);
+            check(GameCodec.decodeBlue(key)==snapshot.getBlueStones(), "blue stones of "+moves);
+
+            buffer.clear();
+            GameCodec.encodeGame(source, buffer);
+            check(buffer.position()==1+(moves.length()+1)/2, "encoded size of "+moves);
+            buffer.flip();
+            Connect4 decoded=GameCodec.decodeGame(buffer);
+            check(decoded.getMode()==mode && decoded.getMoves().equals(source.getMoves()), "bytes of "+moves);
+            check(!buffer.hasRemaining(), "decoding reads the whole game");
+
+            buffer.flip();
+            GameCodec.decodeGame(buffer, game);
+            check(game.getMode()==1 && game.getMoves().equals(source.getMoves()), "decoding into a game keeps its mode");
+
+            Connect4 text=GameCodec.fromText(GameCodec.toText(source));
+            check(text.getMode()==mode && text.getMoves().equals(source.getMoves()), "text of "+moves);
+            check(text.getGameContext().getResult()==source.getGameContext().getResult(), "result of "+moves);
+        }
+
+        Connect4 game=new Connect4(2, new Player(), new Player());
+        game.restoreMoves("3344521");
+        buffer.clear();
+        GameCodec.encodeGame(game, buffer);
+        buffer.flip();
+        buffer.limit(buffer.limit()-1);
+        expectRejected(() -> GameCodec.decodeGame(buffer), "truncated game");
+        expectRejected(() -> GameCodec.decodeGame(ByteBuffer.allocate(0)), "empty buffer");
+        expectRejected(() -> GameCodec.decodeGame(ByteBuffer.allocate(0), new Connect4(1, new Player(), new Player())),
+                "empty buffer into a game");
+        expectRejected(() -> GameCodec.fromText("not*base64"), "invalid text");
+        // header of mode 2 with one move into column 9
+        expectRejected(() -> GameCodec.decodeGame(ByteBuffer.wrap(new byte[]{(byte) (2<<6|1), 9})), "invalid column");
+        System.out.println("GameCodecTest passed");
+    }
+
+    private interface Decode {
+        void run() throws GameException;
+    }
+
+    private static void expectRejected(Decode decode, String message) {
+        try {
+            decode.run();
+            check(false, message+" is rejected");
+        } catch (GameException e) {
+            // expected
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,54 @@
+package game;
+
+import exceptions.GameException;
+
+/**
+ * Checks that a {@link GamePool} hands out reset games and never gives one game to two owners.
+ */
+public class GamePoolTest {
+    public static void main(String[] args) throws Exception {
+        GamePool pool=new GamePool(1, 4);
+        Connect4 game=pool.acquire();
+        game.dropChecker(3);
+        game.setPlayerName(game.getGameContext().getCurrentPlayer(), "previous owner");
+        game.setComputerStrategy((own, opponent) -> 0);
+        check(pool.release(game), "released game is kept");
+        check(pool.size()==1, "pool holds the released game");
+
+        try {
+            pool.release(game);
+            check(false, "second release is rejected");
+        } catch (GameException e) {
+            // expected
+        }
+        check(pool.size()==1, "second release does not queue the game again");
+
+        Connect4 again=pool.acquire();
+        check(again==game, "idle game is reused");
+        check(again.getMoves().isEmpty(), "reused game is reset");
+        Player first=again.getGameContext().getCurrentPlayer();
+        check(first.getPlayerName().isEmpty() && first.getComputerStrategy()==null, "players of a reused game are reset");
+        check(pool.acquire()!=again, "a game is only handed out once");
+
+        GamePool other=new GamePool(1, 4);
+        try {
+            other.release(again);
+            check(false, "game of another pool is rejected");
+        } catch (GameException e) {
+            // expected
+        }
+        check(pool.release(again), "rejected release leaves the game with its pool");
+
+        try {
+            pool.release(new Connect4(1, new Player(), new Player()));
+            check(false, "foreign game is rejected");
+        } catch (GameException e) {
+            // expected
+        }
+        System.out.println("GamePoolTest passed");
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,89 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import exceptions.GameException;
+
+/**
+ * Checks that a {@link GameReplay} shows every ply of random games exactly as {@link Connect4}
+ * published it during play, for any checkpoint interval and any order of seeks.
+ */
+public class GameReplayTest {
+    private static final int[] INTERVALS={1, 3, GameReplay.DEFAULT_CHECKPOINT_INTERVAL, Bitboard.ROWS*Bitboard.COLS+1};
+
+    public static void main(String[] args) throws Exception {
+        Random random=new Random(39);
+        int wins=0;
+        int draws=0;
+        // random games rarely end in a draw, keep playing until one has been checked
+        for(int round=0; round<20000 || draws==0; round++){
+            Connect4 game=new Connect4(1, new Player(), new Player());
+            List<GameSnapshot> played=new ArrayList<>();
+            played.add(game.getSnapshot());
+            // leave some games unfinished
+            int length=round%5==0 ? random.nextInt(Bitboard.ROWS*Bitboard.COLS) : Bitboard.ROWS*Bitboard.COLS;
+            while(played.size()<=length && game.getGameContext().getResult()==GameResult.CONTINUE){
+                int col=random.nextInt(Bitboard.COLS);
+                if(game.getGameContext().getBoard()[0][col]!='\u0000') continue;
+                game.dropChecker(col);
+                played.add(game.getSnapshot());
+            }
+            GameResult result=game.getGameContext().getResult();
+            if(result==GameResult.WIN) wins++;
+            if(result==GameResult.DRAW) draws++;
+
+            GameReplay replay=GameReplay.of(game.getMoves(), INTERVALS[round%INTERVALS.length]);
+            check(replay.length()==played.size()-1 && replay.getFinalResult()==result, "length and result of "+game.getMoves());
+            ReplayCursor cursor=new ReplayCursor(replay);
+            // forwards over every ply, then random jumps in both directions
+            for(int ply=0; ply<=replay.length(); ply++){
+                checkPly(cursor.seek(ply), played.get(ply), game.getMoves());
+            }
+            for(int i=0; i<20; i++){
+                int ply=random.nextInt(replay.length()+1);
+                checkPly(cursor.seek(ply), played.get(ply), game.getMoves());
+                check(cursor.getPly()==ply && cursor.getSnapshot()==replay.getSnapshot(ply), "cursor shows ply "+ply);
+            }
+            if(round<100) checkCursor(replay);
+        }
+        check(wins>0, "won games were checked");
+        System.out.println("GameReplayTest passed ("+wins+" wins, "+draws+" draws)");
+    }
+
+    // Compares a ply of the replay with the snapshot published while the game was played
+    private static void checkPly(GameSnapshot shown, GameSnapshot played, String moves) {
+        String at="ply "+played.getMoveCount()+" of "+moves;
+        check(shown.getRedStones()==played.getRedStones() && shown.getBlueStones()==played.getBlueStones(), "board at "+at);
+        check(shown.getMoveCount()==played.getMoveCount() && shown.getLastColumn()==played.getLastColumn(), "move at "+at);
+        check(shown.getCurrentColor()==played.getCurrentColor(), "turn colour at "+at);
+        check(shown.getResult()==played.getResult(), "result at "+at);
+    }
+
+    // Checks the bounds of seeks and steps, and that viewers share snapshots
+    private static void checkCursor(GameReplay replay) throws GameException {
+        ReplayCursor cursor=new ReplayCursor(replay);
+        ReplayCursor other=new ReplayCursor(replay);
+        check(!cursor.previous() && cursor.getPly()==0, "no step back from the start");
+        for(int ply : new int[]{-1, replay.length()+1}){
+            try {
+                cursor.seek(ply);
+                check(false, "seek to ply "+ply+" is rejected");
+            } catch (GameException e) {
+                // expected
+            }
+            check(cursor.getPly()==0, "rejected seek leaves the cursor in place");
+        }
+        cursor.seek(replay.length());
+        check(!cursor.next() && cursor.getPly()==replay.length(), "no step past the last move");
+        for(int ply=replay.length(); ply>0; ply--){
+            check(other.seek(ply)==cursor.getSnapshot(), "viewers share the snapshot of ply "+ply);
+            check(cursor.previous(), "step back from ply "+ply);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
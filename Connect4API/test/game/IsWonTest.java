@@ -0,0 +1,65 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * Checks that {@link Connect4} reports a win exactly when the last player has four in a row, and
+ * that every diagonal of the board, including those along the edges, is recognised.
+ */
+public class IsWonTest {
+    public static void main(String[] args) throws Exception {
+        // cells of every diagonal window, down-right ones first
+        long[] diagonals=new long[24];
+        int n=0;
+        for(int row=0; row+3<Bitboard.ROWS; row++){
+            for(int col=0; col+3<Bitboard.COLS; col++){
+                long down=0;
+                long up=0;
+                for(int i=0; i<4; i++){
+                    down|=Bitboard.cell(row+i, col+i);
+                    up|=Bitboard.cell(row+i, col+3-i);
+                }
+                diagonals[n]=down;
+                diagonals[n+12]=up;
+                n++;
+            }
+        }
+        boolean[] seen=new boolean[diagonals.length];
+
+        // ends with a diagonal four the old edge clamping of isWon did not see
+        Connect4 known=new Connect4(1, new Player(), new Player());
+        known.restoreMoves("60506424442365414665");
+        check(known.getGameContext().getResult()==GameResult.WIN, "diagonal win of 60506424442365414665");
+
+        Random random=new Random(34);
+        for(int round=0; round<20000; round++){
+            Connect4 game=new Connect4(1, new Player(), new Player());
+            while(game.getGameContext().getResult()==GameResult.CONTINUE){
+                int col=random.nextInt(Bitboard.COLS);
+                if(game.getGameContext().getBoard()[0][col]!='\u0000') continue;
+                game.dropChecker(col);
+                check(game.getGameContext().getResult()==hasFourResult(game), "result after "+game.getMoves());
+            }
+            if(game.getGameContext().getResult()==GameResult.WIN){
+                GameSnapshot snapshot=game.getSnapshot();
+                long winner=snapshot.getCurrentColor()==Connect4.RED ? snapshot.getRedStones() : snapshot.getBlueStones();
+                for(int i=0; i<diagonals.length; i++){
+                    if((winner&diagonals[i])==diagonals[i]) seen[i]=true;
+                }
+            }
+        }
+        for(int i=0; i<seen.length; i++) check(seen[i], "diagonal "+i+" was won at least once");
+        System.out.println("IsWonTest passed");
+    }
+
+    // The result the game should report, judged on the bitboards of the snapshot
+    private static GameResult hasFourResult(Connect4 game) {
+        GameSnapshot snapshot=game.getSnapshot();
+        if(Bitboard.hasFour(snapshot.getRedStones()) || Bitboard.hasFour(snapshot.getBlueStones())) return GameResult.WIN;
+        return snapshot.getMoveCount()==Bitboard.ROWS*Bitboard.COLS ? GameResult.DRAW : GameResult.CONTINUE;
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
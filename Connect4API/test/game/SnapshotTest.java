@@ -0,0 +1,129 @@
+package game;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import exceptions.GameException;
+
+/**
+ * Checks that concurrent moves are validated under the lock and that readers of
+ * {@link Connect4#getSnapshot()} only ever see consistent states.
+ */
+public class SnapshotTest {
+    public static void main(String[] args) throws Exception {
+        concurrentDropsIntoOneColumn();
+        readersSeeConsistentStates();
+        searchRunsWithoutTheLock();
+        System.out.println("SnapshotTest passed");
+    }
+
+    // Twelve players race for the six cells of column 0: exactly six may succeed
+    private static void concurrentDropsIntoOneColumn() throws Exception {
+        for(int round=0; round<500; round++){
+            Connect4 game=new Connect4(1, new Player(), new Player());
+            AtomicInteger played=new AtomicInteger();
+            CountDownLatch start=new CountDownLatch(1);
+            Thread[] threads=new Thread[12];
+            for(int i=0; i<threads.length; i++){
+                threads[i]=new Thread(() -> {
+                    try {
+                        start.await();
+                        game.dropChecker(0);
+                        played.incrementAndGet();
+                    } catch (GameException e) {
+                        // column full
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                threads[i].start();
+            }
+            start.countDown();
+            for(Thread thread : threads) thread.join();
+            check(played.get()==6, "six drops fit into one column, got "+played.get());
+            check(game.getSnapshot().getMoveCount()==6, "snapshot shows six checkers");
+        }
+    }
+
+    private static void readersSeeConsistentStates() throws Exception {
+        Connect4 game=new Connect4(3, new Player(), new Player());
+        AtomicInteger errors=new AtomicInteger();
+        Thread reader=new Thread(() -> {
+            long last=-1;
+            for(int i=0; i<2_000_000; i++){
+                GameSnapshot snapshot=game.getSnapshot();
+                int red=Long.bitCount(snapshot.getRedStones());
+                int blue=Long.bitCount(snapshot.getBlueStones());
+                if(red+blue!=snapshot.getMoveCount() || red-blue<0 || red-blue>1
+                        || (snapshot.getRedStones()&snapshot.getBlueStones())!=0) errors.incrementAndGet();
+                if(snapshot.getVersion()<last) errors.incrementAndGet();
+                last=snapshot.getVersion();
+            }
+            if(last<0) errors.incrementAndGet();
+        });
+        reader.start();
+        while(reader.isAlive()){
+            GameContext context=game.getGameContext();
+            if(context.getResult()!=GameResult.CONTINUE){
+                game.reset();
+                continue;
+            }
+            int col=0;
+            while(context.getBoard()[0][col]!='\u0000') col++;
+            game.dropChecker(col);
+        }
+        reader.join();
+        check(errors.get()==0, errors.get()+" inconsistent snapshots");
+    }
+
+    // A computer move waits in its strategy while other threads read and change the game
+    private static void searchRunsWithoutTheLock() throws Exception {
+        CountDownLatch searching=new CountDownLatch(1);
+        CountDownLatch release=new CountDownLatch(1);
+        AtomicInteger calls=new AtomicInteger();
+        Connect4 game=new Connect4(3, new Player(), new Player());
+        game.setComputerStrategy((own, opponent) -> {
+            if(calls.incrementAndGet()==1){
+                searching.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 5;
+            }
+            return 6;
+        });
+        AtomicInteger failures=new AtomicInteger();
+        Thread mover=new Thread(() -> {
+            try {
+                game.dropChecker(0);
+            } catch (GameException e) {
+                failures.incrementAndGet();
+            }
+        });
+        mover.setDaemon(true);
+        mover.start();
+        check(searching.await(5, TimeUnit.SECONDS), "strategy was asked for a move");
+
+        Thread reader=new Thread(() -> {
+            if(!game.getMoves().isEmpty() || game.getSnapshot().getMoveCount()!=0) failures.incrementAndGet();
+        });
+        reader.setDaemon(true);
+        reader.start();
+        reader.join(5000);
+        check(!reader.isAlive(), "readers are not blocked by the search");
+        // another move lands while the search is still running
+        game.restoreMoves("3");
+        release.countDown();
+        mover.join();
+        check(failures.get()==0, "no failed reads or moves");
+        check(calls.get()==2, "the move is searched again for the changed position");
+        check(game.getMoves().equals("36"), "the move of the second search is played, got "+game.getMoves());
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
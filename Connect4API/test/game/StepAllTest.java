@@ -0,0 +1,65 @@
+package game;
+
+import java.util.Random;
+
+import exceptions.GameException;
+
+/**
+ * Checks that {@link Connect4#stepAll(Connect4[], int[], int[])} accepts and rejects exactly the
+ * moves {@link Connect4#dropChecker(int)} does, on human and computer turns, and counts the games
+ * that are still going on.
+ */
+public class StepAllTest {
+    public static void main(String[] args) throws Exception {
+        // a fixed choice, so that twin games play the same computer moves
+        ComputerStrategy strategy=(own, opponent) -> {
+            long occupied=own|opponent;
+            int col=Math.floorMod(Long.hashCode(own*31-opponent*7), Bitboard.COLS);
+            while((occupied&Bitboard.topMask(col))!=0) col=(col+1)%Bitboard.COLS;
+            return col;
+        };
+        Random random=new Random(32);
+        int computerRejects=0;
+        for(int round=0; round<3000; round++){
+            int mode=1+round%3;
+            Connect4[] stepped=new Connect4[1];
+            stepped[0]=new Connect4(mode, new Player(), new Player());
+            Connect4 dropped=new Connect4(mode, new Player(), new Player());
+            stepped[0].setComputerStrategy(strategy);
+            dropped.setComputerStrategy(strategy);
+            int[] column=new int[1];
+            int[] result=new int[1];
+            for(int turn=0; turn<60; turn++){
+                column[0]=random.nextInt(-1, Bitboard.COLS+1);
+                boolean computer=dropped.getGameContext().getCurrentPlayer().isComputer();
+                boolean finished=dropped.getGameContext().getResult()!=GameResult.CONTINUE;
+                boolean rejected=false;
+                try {
+                    dropped.dropChecker(column[0]);
+                } catch (GameException e) {
+                    rejected=true;
+                }
+                int running=Connect4.stepAll(stepped, column, result);
+                String at="column "+column[0]+" after "+dropped.getMoves();
+                check(rejected==(result[0]==Connect4.STEP_INVALID), "same rejection of "+at);
+                check(stepped[0].getMoves().equals(dropped.getMoves()), "same moves for "+at);
+                check(running==(stepped[0].getGameContext().getResult()==GameResult.CONTINUE ? 1 : 0), "running count for "+at);
+                if(rejected && computer && !finished) computerRejects++;
+            }
+        }
+        check(computerRejects>0, "invalid columns were tried on computer turns");
+
+        Connect4[] games={new Connect4(2, new Player(), new Player()), new Connect4(1, new Player(), new Player())};
+        int[] results=new int[2];
+        check(Connect4.stepAll(games, new int[]{3, 0}, results)==2, "both games are running");
+        // the computer is to move in the first game
+        check(Connect4.stepAll(games, new int[]{9, 0}, results)==2 && results[0]==Connect4.STEP_INVALID,
+                "invalid column on a computer turn is rejected");
+        check(games[0].getMoves().length()==1, "rejected computer move leaves the game unchanged");
+        System.out.println("StepAllTest passed ("+computerRejects+" rejected computer turns)");
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
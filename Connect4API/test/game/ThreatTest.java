@@ -0,0 +1,66 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * Checks the threat masks of {@link Connect4} against a plain search over the legal moves of
+ * random positions.
+ */
+public class ThreatTest {
+    public static void main(String[] args) throws Exception {
+        Random random=new Random(31);
+        int positions=0;
+        for(int round=0; round<2000; round++){
+            Connect4 game=new Connect4(1, new Player(), new Player());
+            while(game.getGameContext().getResult()==GameResult.CONTINUE){
+                GameSnapshot snapshot=game.getSnapshot();
+                boolean red=snapshot.getCurrentColor()==Connect4.RED;
+                long own=red ? snapshot.getRedStones() : snapshot.getBlueStones();
+                long opponent=red ? snapshot.getBlueStones() : snapshot.getRedStones();
+                check(game.getWinningColumns()==winningColumns(own, opponent), "winning columns at "+game.getMoves());
+                check(game.getForcedBlockColumns()==winningColumns(opponent, own), "forced blocks at "+game.getMoves());
+                check(game.getNonLosingColumns()==nonLosingColumns(own, opponent), "non-losing columns at "+game.getMoves());
+                positions++;
+                int col;
+                do {
+                    col=random.nextInt(Bitboard.COLS);
+                } while(cellFor(own|opponent, col)==0);
+                game.dropChecker(col);
+            }
+            check(game.getWinningColumns()==0 && game.getForcedBlockColumns()==0 && game.getNonLosingColumns()==0,
+                    "finished game has no threats");
+        }
+        System.out.println("ThreatTest passed ("+positions+" positions)");
+    }
+
+    // The empty cell a checker dropped into the column lands on, 0 if the column is full
+    private static long cellFor(long occupied, int col) {
+        for(int row=Bitboard.ROWS-1; row>=0; row--){
+            long cell=Bitboard.cell(row, col);
+            if((occupied&cell)==0) return cell;
+        }
+        return 0;
+    }
+
+    private static int winningColumns(long own, long opponent) {
+        int mask=0;
+        for(int col=0; col<Bitboard.COLS; col++){
+            long cell=cellFor(own|opponent, col);
+            if(cell!=0 && Bitboard.hasFour(own|cell)) mask|=1<<col;
+        }
+        return mask;
+    }
+
+    private static int nonLosingColumns(long own, long opponent) {
+        int mask=winningColumns(own, opponent);
+        for(int col=0; col<Bitboard.COLS; col++){
+            long cell=cellFor(own|opponent, col);
+            if(cell!=0 && winningColumns(opponent, own|cell)==0) mask|=1<<col;
+        }
+        return mask;
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,313 @@
+package hosting;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ai.Difficulty;
+import ai.Evaluator;
+import ai.SearchStrategy;
+import ai.SolverCache;
+import exceptions.GameException;
+
+/**
+ * Checks that adding and removing workers never loses or duplicates a game, also when a move
+ * fails halfway.
+ */
+public class ShardRouterTest {
+    private static final int GAMES=60;
+
+    public static void main(String[] args) throws Exception {
+        GameWorker first=start();
+        GameWorker second=start();
+        String firstAddress="127.0.0.1:"+first.getPort();
+        String secondAddress="127.0.0.1:"+second.getPort();
+        try (ShardRouter router=new ShardRouter(2)) {
+            router.addWorker(firstAddress);
+            Map<String, String> states=new HashMap<>();
+            for(int i=0; i<GAMES; i++){
+                String id="game-"+i;
+                check(router.send("NEW "+id+" 1").equals("OK"), "game created");
+                check(router.send("DROPS "+id+" "+(i%7)+((i+1)%7)).startsWith("OK"), "moves played");
+                states.put(id, router.send("STATE "+id));
+            }
+
+            try {
+                router.addWorker(firstAddress);
+                check(false, "a worker cannot be registered twice");
+            } catch (GameException e) {
+                // expected
+            }
+
+            // every import onto the second worker is refused because the IDs already exist there
+            List<String> blockers=new ArrayList<>();
+            for(String id : states.keySet()){
+                check(second.execute("NEW "+id+" 2").equals("OK"), "blocking game created");
+                blockers.add(id);
+            }
+            check(second.execute("IMPORT game-0 "+first.execute("EXPORT game-0").substring(3)).startsWith("ERR"),
+                    "import of an existing id is refused");
+            try {
+                router.addWorker(secondAddress);
+                check(false, "add fails when an import is refused");
+            } catch (GameException e) {
+                // expected
+            }
+            checkStates(router, states);
+            check(hosted(first).size()==GAMES, "source keeps every game after a failed add");
+            check(hosted(second).size()==blockers.size(), "failed add leaves no copies behind");
+
+            try {
+                router.addWorker("127.0.0.1:1");
+                check(false, "add fails for a dead worker");
+            } catch (GameException e) {
+                // expected
+            }
+            checkStates(router, states);
+
+            for(String id : blockers) second.execute("END "+id);
+            int moved=router.addWorker(secondAddress);
+            check(moved>0 && moved<GAMES, "some games moved to the new worker: "+moved);
+            checkStates(router, states);
+            check(hosted(first).size()+hosted(second).size()==GAMES, "no game is duplicated or lost");
+
+            check(router.removeWorker(secondAddress)==moved, "removing moves the games back");
+            checkStates(router, states);
+            check(hosted(first).size()==GAMES && hosted(second).isEmpty(), "all games are back on the first worker");
+
+            difficultyMovesWithTheGame(first, second);
+        } finally {
+            first.close();
+            second.close();
+        }
+        failedRollback();
+        workerFailure();
+        silentWorker();
+        workerKeepsCache();
+        workerMetrics();
+        System.out.println("ShardRouterTest passed");
+    }
+
+    private static void difficultyMovesWithTheGame(GameWorker from, GameWorker to) {
+        check(from.execute("NEW level-game 2 NOVICE").startsWith("ERR"), "unknown difficulty is refused");
+        check(from.execute("NEW level-game 2 EXPERT").equals("OK"), "game with a difficulty created");
+        check(from.execute("DROP level-game 3").startsWith("OK CONTINUE"), "human move played");
+        String computer=from.execute("DROP level-game 0");
+        check(computer.startsWith("OK CONTINUE"), "computer move played");
+        check(from.execute("STATE level-game").endsWith(computer.substring(computer.length()-1)),
+                "reply names the column the computer played: "+computer);
+        String exported=from.execute("EXPORT level-game");
+        check(exported.endsWith(" EXPERT"), "export names the difficulty: "+exported);
+        check(to.execute("IMPORT level-game "+exported.substring(3)).equals("OK"), "game imported");
+        check(to.execute("EXPORT level-game").equals(exported), "difficulty is kept by the import");
+        check(from.execute("STATE level-game").equals(to.execute("STATE level-game")), "moves are kept by the import");
+        from.execute("END level-game");
+        to.execute("END level-game");
+    }
+
+    // Copies that cannot be removed when an add is rolled back are reported and do not block the
+    // next add of the same worker
+    private static void failedRollback() throws Exception {
+        GameWorker first=start();
+        FlakyWorker second=new FlakyWorker();
+        serve(second);
+        String secondAddress="127.0.0.1:"+second.getPort();
+        try (ShardRouter router=new ShardRouter(2)) {
+            router.addWorker("127.0.0.1:"+first.getPort());
+            Map<String, String> states=new HashMap<>();
+            for(int i=0; i<GAMES; i++){
+                String id="orphan-"+i;
+                check(router.send("NEW "+id+" 1").equals("OK"), "game created");
+                check(router.send("DROP "+id+" "+(i%7)).startsWith("OK"), "move played");
+                states.put(id, router.send("STATE "+id));
+            }
+            try {
+                router.addWorker(secondAddress);
+                check(false, "add fails when an import is refused");
+            } catch (GameException e) {
+                // expected
+            }
+            check(router.getOrphans(secondAddress).size()==2, "copies that were not removed are reported");
+            check(hosted(second).containsAll(router.getOrphans(secondAddress)), "orphans are still on the worker");
+            checkStates(router, states);
+
+            second.failing=false;
+            int moved=router.addWorker(secondAddress);
+            check(moved>2, "add succeeds over the orphaned copies: "+moved);
+            check(router.getOrphans(secondAddress).isEmpty(), "orphans are replaced by the moved games");
+            check(hosted(first).size()+hosted(second).size()==GAMES, "no game is duplicated or lost");
+            checkStates(router, states);
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    // A worker that dies mid-session fails its own games only, and the router reconnects once a
+    // worker is back on the same port
+    private static void workerFailure() throws Exception {
+        GameWorker stable=start();
+        GameWorker dying=start();
+        int port=dying.getPort();
+        GameWorker revived=null;
+        try (ShardRouter router=new ShardRouter(2, 2000)) {
+            router.addWorker("127.0.0.1:"+stable.getPort());
+            router.addWorker("127.0.0.1:"+port);
+            for(int i=0; i<20; i++){
+                check(router.send("NEW failing-"+i+" 1").equals("OK"), "game created");
+                check(router.send("DROP failing-"+i+" 3").startsWith("OK"), "move played");
+            }
+            List<String> lost=hosted(dying);
+            check(!lost.isEmpty() && lost.size()<20, "games are spread over both workers");
+
+            dying.close();
+            for(int i=0; i<20; i++){
+                String id="failing-"+i;
+                for(int attempt=0; attempt<3; attempt++){
+                    try {
+                        String reply=router.send("STATE "+id);
+                        check(!lost.contains(id) && reply.equals("OK 1 3"), "state of "+id+" on the live worker");
+                    } catch (GameException e) {
+                        check(lost.contains(id), "only games of the dead worker fail: "+id);
+                    }
+                }
+            }
+
+            revived=start(port);
+            for(String id : lost){
+                check(router.send("NEW "+id+" 1").equals("OK"), "game recreated on the revived worker");
+                check(router.send("DROP "+id+" 4").startsWith("OK"), "replies match their requests again");
+                check(router.send("STATE "+id).equals("OK 1 4"), "state of the recreated "+id);
+            }
+        } finally {
+            stable.close();
+            if(revived!=null) revived.close();
+        }
+    }
+
+    // A worker that accepts a connection but never replies fails the request after the timeout
+    private static void silentWorker() throws Exception {
+        try (ServerSocket silent=new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             ShardRouter router=new ShardRouter(1, 200)) {
+            router.addWorker("127.0.0.1:"+silent.getLocalPort());
+            long start=System.nanoTime();
+            try {
+                router.send("STATE silent-game");
+                check(false, "a silent worker fails the request");
+            } catch (GameException e) {
+                // expected
+            }
+            check(System.nanoTime()-start<5_000_000_000L, "request gives up after the timeout");
+        }
+    }
+
+    // Positions searched by the computer players of a worker are in its cache file after it closed
+    private static void workerKeepsCache() throws Exception {
+        Path file=Files.createTempFile("worker", ".cache");
+        Files.delete(file);
+        try {
+            GameWorker worker=new GameWorker(0, file);
+            try {
+                check(worker.execute("NEW cached-game 3 EXPERT").equals("OK"), "computer game created");
+                check(worker.execute("DROP cached-game 0").startsWith("OK CONTINUE"), "computer move searched");
+            } finally {
+                worker.close();
+            }
+            try (SolverCache cache=SolverCache.open(file, 64)) {
+                check(cache.capacity()>64, "worker created the cache file");
+                new SearchStrategy(Difficulty.EXPERT, new Evaluator(), cache, null, new SplittableRandom(1)).chooseColumn(0, 0);
+                check(cache.getHits()>0, "a restarted search finds the positions of the worker");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // All computer players of a worker count against one CPU cap, read and set over the protocol
+    private static void workerMetrics() throws Exception {
+        GameWorker worker=new GameWorker(0);
+        try {
+            check(worker.execute("NEW metered-game 3 EXPERT").equals("OK"), "computer game created");
+            check(worker.execute("DROP metered-game 0").startsWith("OK"), "computer move searched");
+            String[] reply=worker.execute("METRICS RESET").split(" ");
+            check(Long.parseLong(reply[1])>0 && reply[2].equals("none"), "cpu is recorded without a cap");
+            long[] expert=levelCounters(reply, Difficulty.EXPERT);
+            check(expert[0]>0 && expert[1]/expert[0]>Difficulty.BEGINNER.getNodeBudget(), "expert moves search deeply");
+            check(worker.execute("METRICS").split(" ")[1].equals("0"), "reset starts a new period");
+
+            check(worker.execute("CAP 0").equals("OK"), "cap set");
+            check(worker.execute("DROP metered-game 0").startsWith("OK"), "capped computer move");
+            reply=worker.execute("METRICS").split(" ");
+            check(reply[2].equals("0"), "cap is reported");
+            expert=levelCounters(reply, Difficulty.EXPERT);
+            check(expert[0]>0 && expert[1]<=expert[0]*(Difficulty.BEGINNER.getNodeBudget()+1), "capped moves use the beginner budget");
+            check(worker.execute("CAP none").equals("OK") && worker.execute("METRICS").split(" ")[2].equals("none"), "cap removed");
+            check(worker.execute("CAP soon").startsWith("ERR"), "invalid cap is refused");
+        } finally {
+            worker.close();
+        }
+    }
+
+    private static long[] levelCounters(String[] reply, Difficulty difficulty) {
+        for(String part : reply){
+            if(!part.startsWith(difficulty+"=")) continue;
+            String[] counters=part.substring(difficulty.name().length()+1).split(",");
+            return new long[]{Long.parseLong(counters[0]), Long.parseLong(counters[1]), Long.parseLong(counters[2])};
+        }
+        throw new AssertionError("no counters of "+difficulty);
+    }
+
+    private static GameWorker start() throws Exception {
+        return start(0);
+    }
+
+    private static GameWorker start(int port) throws Exception {
+        return serve(new GameWorker(port));
+    }
+
+    private static GameWorker serve(GameWorker worker) {
+        Thread thread=new Thread(worker::serve);
+        thread.setDaemon(true);
+        thread.start();
+        return worker;
+    }
+
+    // A worker that, while failing, refuses the third import and every removal
+    private static class FlakyWorker extends GameWorker {
+        volatile boolean failing=true;
+        private final AtomicInteger imports=new AtomicInteger();
+
+        FlakyWorker() throws Exception {
+            super(0);
+        }
+
+        @Override
+        String execute(String line) {
+            if(failing && line.startsWith("END ")) return "ERR Worker is failing";
+            if(failing && line.startsWith("IMPORT ") && imports.incrementAndGet()==3) return "ERR Worker is failing";
+            return super.execute(line);
+        }
+    }
+
+    private static List<String> hosted(GameWorker worker) {
+        String ids=worker.execute("LIST").substring(2).trim();
+        return ids.isEmpty() ? List.of() : List.of(ids.split(" "));
+    }
+
+    private static void checkStates(ShardRouter router, Map<String, String> states) throws GameException {
+        for(Map.Entry<String, String> entry : states.entrySet()){
+            check(router.send("STATE "+entry.getKey()).equals(entry.getValue()), "state of "+entry.getKey()+" is kept");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) throw new AssertionError(message);
+    }
+}
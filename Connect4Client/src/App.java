@@ -1,5 +1,7 @@
 import java.util.Scanner;
 
+import ai.Difficulty;
+import ai.SearchStrategy;
 import game.Connect4;
 import game.Player;
 import game.GameContext;
@@ -44,6 +46,18 @@ public class App {
         }
 
         Connect4 game = new Connect4(mode, player1, player2);
+        if (mode != 1) {
+            System.out.println("Please select a difficulty: ");
+            System.out.println("0. Random");
+            Difficulty[] levels = Difficulty.values();
+            for (int i = 0; i < levels.length; i++) {
+                System.out.println((i + 1) + ". " + levels[i]);
+            }
+            int level = scanner.nextInt();
+            if (level >= 1 && level <= levels.length) {
+                game.setComputerStrategy(new SearchStrategy(levels[level - 1]));
+            }
+        }
         GameContext gameContext = game.startGame();
         printBoard(gameContext.getBoard());
 
@@ -57,6 +71,10 @@ public class App {
                 System.out.println("Computer is thinking...");
                 // sleep for 1 second
                 Thread.sleep(1000);
+                // the computer picks its own column, but the one sent must not be full
+                while (gameContext.getBoard()[0][column] != '\u0000') {
+                    column++;
+                }
             } else {
                 System.out.println(currentPlayer.getPlayerName() + ", please choose a column (0-6): ");
                 // Check if the input is an integer
@@ -89,14 +107,6 @@ public class App {
     }
 
     private static void printBoard(char[][] board) {
-        System.out.println("Current board:");
-        for (char[] row : board) {
-            for (char cell : row) {
-                System.out.print((cell == '\u0000' ? '.' : cell) + " ");
-            }
-            System.out.println();
-        }
-        System.out.println("0 1 2 3 4 5 6");
-        System.out.println();        
+        Connect4.printTextBasedBoard(board);
     }
 }
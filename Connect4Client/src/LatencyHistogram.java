@@ -0,0 +1,77 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, thread-safe latency histogram in the style of HdrHistogram.
+ *
+ * Values are counted in log-linear buckets: below 128 every value has its own bucket, above that
+ * every power of two is split into 64 buckets, so any recorded value is kept with about 1.5%
+ * precision. Recording never allocates, which keeps the measurement out of the measured latency.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS=7;
+    private static final int HALF_SUB_BUCKETS=1<<(SUB_BUCKET_BITS-1);
+    private static final int BUCKETS=(64-SUB_BUCKET_BITS+1)*HALF_SUB_BUCKETS+HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts=new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray summary=new AtomicLongArray(2); // total count, max value
+
+    /**
+     * Records one value.
+     *
+     * @param value the value, for example a latency in nanoseconds; negative values count as 0
+     */
+    public void record(long value) {
+        if(value<0) value=0;
+        counts.incrementAndGet(indexOf(value));
+        summary.incrementAndGet(0);
+        long max;
+        while(value>(max=summary.get(1)) && !summary.compareAndSet(1, max, value)) {
+            // retry until the larger value is stored
+        }
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return summary.get(0);
+    }
+
+    /**
+     * @return the largest recorded value
+     */
+    public long getMax() {
+        return summary.get(1);
+    }
+
+    /**
+     * Gets the value at the given percentile.
+     *
+     * @param percentile the percentile, for example 99.9
+     * @return the upper end of the bucket holding that percentile, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total=getCount();
+        if(total==0) return 0;
+        long target=Math.max(1, (long) Math.ceil(total*percentile/100.0));
+        long seen=0;
+        for(int i=0; i<BUCKETS; i++){
+            seen+=counts.get(i);
+            if(seen>=target) return Math.min(highestValueOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    private static int indexOf(long value) {
+        if(value<2*HALF_SUB_BUCKETS) return (int) value;
+        int shift=63-Long.numberOfLeadingZeros(value)-(SUB_BUCKET_BITS-1);
+        return shift*HALF_SUB_BUCKETS+(int) (value>>>shift);
+    }
+
+    private static long highestValueOf(int index) {
+        if(index<2*HALF_SUB_BUCKETS) return index;
+        int shift=index/HALF_SUB_BUCKETS-1;
+        long subBucket=index-(long) shift*HALF_SUB_BUCKETS;
+        return ((subBucket+1)<<shift)-1;
+    }
+}
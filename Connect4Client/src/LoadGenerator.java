@@ -0,0 +1,276 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import game.Connect4;
+import game.GameContext;
+import game.GameResult;
+import game.Player;
+
+import exceptions.GameException;
+
+/**
+ * Simulates many concurrent human players against a Connect4 service to plan capacity.
+ *
+ * Every simulated player repeatedly starts a human vs computer game and plays it to the end,
+ * waiting a random think time before each move. A configurable share of moves is deliberately
+ * invalid. The latency of every operation is recorded per operation type and printed as
+ * throughput and percentiles at the end. A valid move that is answered with an error, for
+ * example because a worker failed, ends the game; such games are counted as failed, not as
+ * finished, so a failing service does not look fast.
+ *
+ * Every player runs on its own virtual thread, so thousands of players cost little more than
+ * their game state.
+ *
+ * Usage: java LoadGenerator [options]
+ *   --target inproc|host:port  play against the API in this JVM or a hosting.ShardRouter / GameWorker (default inproc)
+ *   --players N                number of simulated players (default 1000)
+ *   --duration S               seconds to run (default 30)
+ *   --think exp|uniform|fixed  think time distribution (default exp)
+ *   --think-mean MS            mean think time in milliseconds (default 200)
+ *   --invalid P                share of invalid moves between 0 and 1 (default 0.05)
+ */
+public class LoadGenerator {
+    private static final String NEW="new";
+    private static final String DROP="drop";
+    private static final String INVALID_DROP="invalid drop";
+
+    private final Map<String, LatencyHistogram> histograms=new LinkedHashMap<>();
+    private final AtomicLong games=new AtomicLong();
+    private final AtomicLong failedGames=new AtomicLong();
+    private final AtomicLong errors=new AtomicLong();
+    private final AtomicLong gameIds=new AtomicLong();
+
+    private String target="inproc";
+    private int players=1000;
+    private int durationSeconds=30;
+    private String think="exp";
+    private double thinkMeanMillis=200;
+    private double invalidShare=0.05;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator=new LoadGenerator();
+        for(int i=0; i+1<args.length; i+=2){
+            switch(args[i]){
+                case "--target": generator.target=args[i+1]; break;
+                case "--players": generator.players=Integer.parseInt(args[i+1]); break;
+                case "--duration": generator.durationSeconds=Integer.parseInt(args[i+1]); break;
+                case "--think": generator.think=args[i+1]; break;
+                case "--think-mean": generator.thinkMeanMillis=Double.parseDouble(args[i+1]); break;
+                case "--invalid": generator.invalidShare=Double.parseDouble(args[i+1]); break;
+                default: throw new IllegalArgumentException("Unknown option "+args[i]);
+            }
+        }
+        generator.run();
+    }
+
+    private void run() throws InterruptedException {
+        histograms.put(NEW, new LatencyHistogram());
+        histograms.put(DROP, new LatencyHistogram());
+        histograms.put(INVALID_DROP, new LatencyHistogram());
+
+        ExecutorService executor=Executors.newVirtualThreadPerTaskExecutor();
+        System.out.println("Running "+players+" players against "+target+" for "+durationSeconds+" s");
+        long start=System.nanoTime();
+        long deadline=start+TimeUnit.SECONDS.toNanos(durationSeconds);
+        for(int p=0; p<players; p++){
+            long seed=p;
+            executor.execute(() -> runPlayer(new SplittableRandom(seed), deadline));
+        }
+        executor.shutdown();
+        executor.awaitTermination(durationSeconds+60L, TimeUnit.SECONDS);
+        report((System.nanoTime()-start)/1e9);
+    }
+
+    private void runPlayer(SplittableRandom random, long deadline) {
+        try (GameClient client=target.equals("inproc") ? new InProcessClient() : new RemoteClient(target)) {
+            while(System.nanoTime()<deadline){
+                String id="load-"+gameIds.incrementAndGet();
+                long begin=System.nanoTime();
+                client.newGame(id);
+                histograms.get(NEW).record(System.nanoTime()-begin);
+                int[] heights=new int[7];
+                boolean running=true;
+                boolean failed=false;
+                while(running && System.nanoTime()<deadline){
+                    thinkPause(random);
+                    boolean invalid=random.nextDouble()<invalidShare;
+                    int column=invalid ? 7 : openColumn(random, heights);
+                    begin=System.nanoTime();
+                    String result=client.drop(id, column, heights);
+                    histograms.get(invalid ? INVALID_DROP : DROP).record(System.nanoTime()-begin);
+                    if(invalid) continue;
+                    if(result.equals("CONTINUE")){
+                        // the computer answers in the same game; it picks its own column, but the
+                        // column sent must still be open
+                        begin=System.nanoTime();
+                        result=client.drop(id, openColumn(random, heights), heights);
+                        histograms.get(DROP).record(System.nanoTime()-begin);
+                    }
+                    failed=!isResult(result);
+                    running=result.equals("CONTINUE");
+                }
+                client.endGame(id);
+                if(failed) failedGames.incrementAndGet();
+                else games.incrementAndGet();
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            System.err.println("Player failed: "+e.getMessage());
+        }
+    }
+
+    private void thinkPause(SplittableRandom random) throws InterruptedException {
+        double millis;
+        switch(think){
+            case "fixed": millis=thinkMeanMillis; break;
+            case "uniform": millis=random.nextDouble()*2*thinkMeanMillis; break;
+            default: millis=-thinkMeanMillis*Math.log(1-random.nextDouble()); break;
+        }
+        long nanos=(long) (millis*1_000_000);
+        if(nanos>0) Thread.sleep(nanos/1_000_000, (int) (nanos%1_000_000));
+    }
+
+    // Whether the reply to a valid move is a game result rather than an error
+    private static boolean isResult(String result) {
+        for(GameResult value : GameResult.values()){
+            if(value.name().equals(result)) return true;
+        }
+        return false;
+    }
+
+    private static int openColumn(SplittableRandom random, int[] heights) {
+        int column=random.nextInt(7);
+        while(heights[column]>=6) column=(column+1)%7;
+        return column;
+    }
+
+    private void report(double seconds) {
+        System.out.printf("%n%,d games finished in %.1f s (%,.1f games/s), %,d games failed, %d player errors%n",
+                games.get(), seconds, games.get()/seconds, failedGames.get(), errors.get());
+        System.out.printf("%-14s %12s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for(Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()){
+            LatencyHistogram h=entry.getValue();
+            System.out.printf("%-14s %,12d %,10.0f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    entry.getKey(), h.getCount(), h.getCount()/seconds,
+                    h.getValueAtPercentile(50)/1e3, h.getValueAtPercentile(90)/1e3,
+                    h.getValueAtPercentile(99)/1e3, h.getValueAtPercentile(99.9)/1e3, h.getMax()/1e3);
+        }
+    }
+
+    /**
+     * The operations a simulated player needs, against either target.
+     */
+    private interface GameClient extends AutoCloseable {
+        void newGame(String id) throws Exception;
+
+        /**
+         * Drops a checker and counts it in the column it landed in, which for a computer turn is
+         * the column the computer picked.
+         *
+         * @return the game result after the move, or the error message of a rejected or failed move
+         */
+        String drop(String id, int column, int[] heights) throws Exception;
+
+        void endGame(String id) throws Exception;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Plays through the Connect4 API in this JVM, one game per player at a time.
+     */
+    private static class InProcessClient implements GameClient {
+        private Connect4 game;
+
+        @Override
+        public void newGame(String id) throws GameException {
+            game=new Connect4(2, new Player(id, false), new Player("Computer", true));
+            game.startGame();
+        }
+
+        @Override
+        public String drop(String id, int column, int[] heights) {
+            try {
+                String result=game.dropChecker(column).getResult().name();
+                heights[game.getSnapshot().getLastColumn()]++;
+                return result;
+            } catch (GameException e) {
+                return e.getMessage();
+            }
+        }
+
+        @Override
+        public void endGame(String id) {
+            game=null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Plays over the line protocol of hosting.GameWorker, directly or through hosting.ShardRouter.
+     */
+    private static class RemoteClient implements GameClient {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        RemoteClient(String target) throws IOException {
+            String[] hostPort=target.split(":");
+            socket=new Socket(hostPort[0], Integer.parseInt(hostPort[1]));
+            socket.setTcpNoDelay(true);
+            in=new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out=new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        private String call(String request) throws IOException {
+            out.println(request);
+            out.flush();
+            String reply=in.readLine();
+            if(reply==null) throw new IOException("Connection closed");
+            return reply;
+        }
+
+        @Override
+        public void newGame(String id) throws IOException {
+            String reply=call("NEW "+id+" 2");
+            if(!reply.startsWith("OK")) throw new IOException(reply);
+        }
+
+        @Override
+        public String drop(String id, int column, int[] heights) throws IOException {
+            String reply=call("DROP "+id+" "+column);
+            if(!reply.startsWith("OK ")) return reply;
+            // OK <result> <color> <lastColumn>
+            String[] parts=reply.split(" ");
+            heights[Integer.parseInt(parts[3])]++;
+            return parts[1];
+        }
+
+        @Override
+        public void endGame(String id) throws IOException {
+            call("END "+id);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}